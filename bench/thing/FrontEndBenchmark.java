@@ -0,0 +1,51 @@
+package thing;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrontEndBenchmark {
+  
+  @Param({"antlr", "direct"})
+  public String parser;
+  
+  @Param({"factorial", "point", "strings", "range"})
+  public String workload;
+  
+  private String source;
+  
+  @Setup
+  public void setup() throws IOException {
+    source = Files.readString(Path.of(InterpreterBenchmark.WORKLOADS, workload + ".thing"));
+  }
+  
+  @Benchmark
+  public AST frontEnd() {
+    if (parser.equals("direct")) return new ASTParser(new StringReader(source)).file();
+    return InterpreterBenchmark.parse(source).accept(new ASTTranslator());
+  }
+  
+  public static void main(String[] args) throws RunnerException {
+    var options = new OptionsBuilder()
+      .include(FrontEndBenchmark.class.getSimpleName())
+      .addProfiler(GCProfiler.class);
+    if (args.length > 0) options.param("workload", args[0].split(","));
+    new Runner(options.build()).run();
+  }
+  
+}
\ No newline at end of file
@@ -0,0 +1,77 @@
+package thing;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.antlr.v4.runtime.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterpreterBenchmark {
+  
+  public static final String WORKLOADS = System.getProperty("thing.bench.workloads", "bench/workloads");
+  
+  @Param({"factorial", "point", "strings", "range"})
+  public String workload;
+  
+  private String source;
+  private ThingParser.FileContext tree;
+  private AST.DefsNode ast;
+  
+  @Setup
+  public void setup() throws IOException {
+    source = Files.readString(Path.of(WORKLOADS, workload + ".thing"));
+    tree = parse(source);
+    ast = (AST.DefsNode) ASTResolver.resolve(tree.accept(new ASTTranslator()));
+  }
+  
+  static ThingParser.FileContext parse(String source) {
+    var parser = new ThingParser(new CommonTokenStream(new ThingLexer(CharStreams.fromString(source))));
+    var file = parser.file();
+    if (parser.getNumberOfSyntaxErrors() != 0) throw new IllegalStateException("syntax errors in benchmark workload");
+    return file;
+  }
+  
+  @Benchmark
+  public ThingParser.FileContext parse() {
+    return parse(source);
+  }
+  
+  @Benchmark
+  public AST translate() {
+    return tree.accept(new ASTTranslator());
+  }
+  
+  @Benchmark
+  public Value evaluate() {
+    return ast.accept(new ASTEvaluator());
+  }
+  
+  @Benchmark
+  public void pipeline(Blackhole blackhole) {
+    var file = parse(source);
+    blackhole.consume(ASTResolver.resolve(file.accept(new ASTTranslator())).accept(new ASTEvaluator()));
+  }
+  
+  public static void main(String[] args) throws RunnerException {
+    var options = new OptionsBuilder()
+      .include(InterpreterBenchmark.class.getSimpleName() + (args.length == 0 ? "" : '.' + args[0]))
+      .addProfiler(GCProfiler.class);
+    if (args.length > 1) options.param("workload", args[1].split(","));
+    new Runner(options.build()).run();
+  }
+  
+}
\ No newline at end of file
@@ -0,0 +1,136 @@
+package thing;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.TreeMap;
+
+final class MacroBenchmark {
+  
+  private static final String[] METRICS = {"wall.ms", "cpu.ms", "heap.peak.mb", "gc.count"};
+  
+  private int warmup = 3, iterations = 10;
+  private double threshold = 0.10;
+  private Path corpus = Path.of("bench", "corpus"), report = null, baseline = null;
+  
+  private MacroBenchmark() {}
+  
+  public static void main(String[] args) throws IOException {
+    var benchmark = new MacroBenchmark();
+    for (var i = 0; i < args.length; i++) switch (args[i]) {
+      case "--warmup": benchmark.warmup = Integer.parseInt(args[++i]); break;
+      case "--iterations": benchmark.iterations = Integer.parseInt(args[++i]); break;
+      case "--threshold": benchmark.threshold = Double.parseDouble(args[++i]) / 100; break;
+      case "--report": benchmark.report = Path.of(args[++i]); break;
+      case "--baseline": benchmark.baseline = Path.of(args[++i]); break;
+      default: benchmark.corpus = Path.of(args[i]);
+    }
+    System.exit(benchmark.run());
+  }
+  
+  private int run() throws IOException {
+    var programs = new ArrayList<Path>();
+    try (var files = Files.list(corpus)) {
+      files.filter(file -> file.toString().endsWith(".thing")).sorted().forEach(programs::add);
+    }
+    if (programs.isEmpty()) {
+      System.err.println("no .thing programs in '" + corpus + '\'');
+      return 1;
+    }
+    var results = new Properties();
+    results.setProperty("warmup", Integer.toString(warmup));
+    results.setProperty("iterations", Integer.toString(iterations));
+    for (var program : programs) {
+      var name = program.getFileName().toString().replaceFirst("\\.thing$", "");
+      var samples = measure(program.toString());
+      if (samples == null) {
+        System.err.println(name + ": program failed");
+        return 1;
+      }
+      for (var i = 0; i < METRICS.length; i++) results.setProperty(name + '.' + METRICS[i], format(samples[i]));
+      System.out.printf("%-16s wall %10s ms  cpu %10s ms  heap %8s MB  gc %5s%n", name, format(samples[0]), format(samples[1]), format(samples[2]), format(samples[3]));
+    }
+    if (report != null) try (Writer out = Files.newBufferedWriter(report)) {
+      out.write("# Thing macro benchmark\n");
+      for (var entry : new TreeMap<>(results).entrySet()) out.write(entry.getKey() + "=" + entry.getValue() + '\n');
+    }
+    return baseline == null ? 0 : compare(results);
+  }
+  
+  private double[] measure(String program) {
+    var out = System.out;
+    var memory = ManagementFactory.getMemoryPoolMXBeans();
+    var os = (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+    double[] wall = new double[iterations], cpu = new double[iterations];
+    double peak = 0, gcs = 0;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    try {
+      for (var i = 0; i < warmup; i++) if (Thing.run(program) != 0) return null;
+      for (var i = 0; i < iterations; i++) {
+        System.gc();
+        for (var pool : memory) if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        var gcBefore = gcCount();
+        long cpuBefore = os.getProcessCpuTime(), wallBefore = System.nanoTime();
+        if (Thing.run(program) != 0) return null;
+        wall[i] = (System.nanoTime() - wallBefore) / 1e6;
+        cpu[i] = (os.getProcessCpuTime() - cpuBefore) / 1e6;
+        gcs += gcCount() - gcBefore;
+        var heap = 0L;
+        for (var pool : memory) if (pool.getType() == MemoryType.HEAP) heap += pool.getPeakUsage().getUsed();
+        peak = Math.max(peak, heap / (1024.0 * 1024.0));
+      }
+    } finally {
+      System.setOut(out);
+    }
+    return new double[] {median(wall), median(cpu), peak, gcs / iterations};
+  }
+  
+  private int compare(Properties results) throws IOException {
+    var saved = new Properties();
+    try (Reader in = Files.newBufferedReader(baseline)) {
+      saved.load(in);
+    }
+    var regressions = 0;
+    for (var key : new TreeMap<>(saved).keySet()) {
+      var metric = (String) key;
+      if (!metric.endsWith(".wall.ms") && !metric.endsWith(".cpu.ms")) continue;
+      var current = results.getProperty(metric);
+      if (current == null) continue;
+      double before = Double.parseDouble(saved.getProperty(metric)), after = Double.parseDouble(current);
+      var change = before == 0 ? 0 : (after - before) / before;
+      if (change > threshold) {
+        regressions++;
+        System.out.printf("REGRESSION %-24s %10s -> %10s (%+.1f%%)%n", metric, format(before), format(after), change * 100);
+      }
+    }
+    if (regressions == 0) System.out.printf("no regressions beyond %.1f%% against %s%n", threshold * 100, baseline);
+    return regressions == 0 ? 0 : 2;
+  }
+  
+  private static long gcCount() {
+    var count = 0L;
+    for (var gc : ManagementFactory.getGarbageCollectorMXBeans()) count += Math.max(0, gc.getCollectionCount());
+    return count;
+  }
+  
+  private static double median(double[] samples) {
+    var sorted = samples.clone();
+    Arrays.sort(sorted);
+    var middle = sorted.length / 2;
+    return sorted.length % 2 == 0 ? (sorted[middle - 1] + sorted[middle]) / 2 : sorted[middle];
+  }
+  
+  private static String format(double value) {
+    return String.format("%.3f", value);
+  }
+  
+}
\ No newline at end of file
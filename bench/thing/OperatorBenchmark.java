@@ -0,0 +1,90 @@
+package thing;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperatorBenchmark {
+  
+  private static final Value.BinOpFunc[] OPERATORS = {
+    Value.BinOpFunc.ADD, Value.BinOpFunc.SUB, Value.BinOpFunc.MUL, Value.BinOpFunc.DIV, Value.BinOpFunc.MOD,
+    Value.BinOpFunc.EQ, Value.BinOpFunc.NEQ, Value.BinOpFunc.LT, Value.BinOpFunc.GT, Value.BinOpFunc.LTE, Value.BinOpFunc.GTE
+  };
+  
+  private static final int ROUNDS = 100000;
+  
+  @Param({"numbers", "uncached", "mixed"})
+  public String operands;
+  
+  private Value[] lefts, rights;
+  
+  @Setup
+  public void setup() {
+    if (operands.equals("numbers")) {
+      lefts = new Value[] {Value.Number.of(60), Value.Number.of(8), Value.Number.of(12)};
+      rights = new Value[] {Value.Number.of(5), Value.Number.of(4), Value.Number.of(3)};
+    } else if (operands.equals("uncached")) {
+      lefts = new Value[] {Value.Number.of(60.5), Value.Number.of(100000), Value.Number.of(12.75)};
+      rights = new Value[] {Value.Number.of(5.25), Value.Number.of(4096), Value.Number.of(0.5)};
+    } else {
+      lefts = new Value[] {Value.Number.of(60), Value.Bool.TRUE, Value.Nil.VALUE};
+      rights = new Value[] {Value.Bool.FALSE, Value.Number.of(3), Value.Number.of(4)};
+    }
+  }
+  
+  @Benchmark
+  public void operate(Blackhole blackhole) {
+    for (var op : OPERATORS) for (var i = 0; i < lefts.length; i++) blackhole.consume(op.operate(lefts[i], rights[i]));
+  }
+  
+  public static void main(String[] args) throws RunnerException {
+    if (args.length > 0 && args[0].equals("--check")) System.exit(check());
+    var options = new OptionsBuilder()
+      .include(OperatorBenchmark.class.getSimpleName())
+      .addProfiler(GCProfiler.class);
+    if (args.length > 0) options.param("operands", args[0].split(","));
+    new Runner(options.build()).run();
+  }
+  
+  private static int check() {
+    var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    var thread = Thread.currentThread().getId();
+    var sink = new Value[OPERATORS.length * 3];
+    var before = threads.getThreadAllocatedBytes(thread);
+    for (var round = 0; round < ROUNDS; round++) for (var i = 0; i < sink.length; i++) sink[i] = Value.Number.of(round + i + 0.5);
+    var number = (double) (threads.getThreadAllocatedBytes(thread) - before) / ROUNDS / sink.length;
+    var failed = 0;
+    var benchmark = new OperatorBenchmark();
+    for (var operands : new String[] {"numbers", "uncached", "mixed"}) {
+      benchmark.operands = operands;
+      benchmark.setup();
+      var results = 0;
+      for (var op : OPERATORS) for (var i = 0; i < benchmark.lefts.length; i++) if (op.operate(benchmark.lefts[i], benchmark.rights[i]) != op.operate(benchmark.lefts[i], benchmark.rights[i])) results++;
+      before = threads.getThreadAllocatedBytes(thread);
+      for (var round = 0; round < ROUNDS; round++) {
+        var j = 0;
+        for (var op : OPERATORS) for (var i = 0; i < benchmark.lefts.length; i++) sink[j++] = op.operate(benchmark.lefts[i], benchmark.rights[i]);
+      }
+      var allocated = (double) (threads.getThreadAllocatedBytes(thread) - before) / ROUNDS;
+      var expected = results * number;
+      var ok = allocated <= expected + 1;
+      if (!ok) failed++;
+      System.out.printf("%-10s %2d new numbers per round, allocated %7.1f B (results alone %7.1f B)%s%n", operands, results, allocated, expected, ok ? "" : "  FAILED");
+    }
+    return failed == 0 ? 0 : 2;
+  }
+  
+}
\ No newline at end of file
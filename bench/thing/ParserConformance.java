@@ -0,0 +1,96 @@
+package thing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.v4.runtime.*;
+
+final class ParserConformance {
+  
+  private ParserConformance() {}
+  
+  public static void main(String[] args) throws IOException {
+    var roots = args.length == 0 ? new String[] {"demo.thing", "bench/workloads", "bench/corpus", "bench/conformance"} : args;
+    var programs = new ArrayList<Path>();
+    for (var root : roots) collect(Path.of(root), programs);
+    var failures = 0;
+    for (var program : programs) {
+      var source = Files.readString(program);
+      String expected = antlr(source), actual = direct(source);
+      if (expected.equals(actual)) {
+        System.out.println("ok       " + program);
+      } else {
+        failures++;
+        System.out.println("MISMATCH " + program + ": " + difference(expected, actual));
+      }
+    }
+    System.out.println(programs.size() - failures + "/" + programs.size() + " programs parse to identical ASTs");
+    if (failures != 0) System.exit(1);
+  }
+  
+  private static void collect(Path root, List<Path> programs) throws IOException {
+    if (!Files.isDirectory(root)) {
+      programs.add(root);
+      return;
+    }
+    try (var files = Files.walk(root)) {
+      files.filter(file -> file.toString().endsWith(".thing")).sorted().forEach(programs::add);
+    }
+  }
+  
+  private static String antlr(String source) {
+    var errors = new BaseErrorListener() {
+      private int count = 0;
+      
+      @Override
+      public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+        count++;
+      }
+    };
+    var lexer = new ThingLexer(CharStreams.fromString(source));
+    lexer.removeErrorListeners();
+    lexer.addErrorListener(errors);
+    var parser = new ThingParser(new CommonTokenStream(lexer));
+    parser.removeErrorListeners();
+    parser.addErrorListener(errors);
+    var tree = parser.file();
+    if (errors.count != 0) return "syntax error";
+    try {
+      return print(tree.accept(new ASTTranslator()));
+    } catch (ASTLexer.SyntaxException e) {
+      return "syntax error";
+    }
+  }
+  
+  private static String direct(String source) {
+    try {
+      return print(new ASTParser(new StringReader(source)).file());
+    } catch (ASTLexer.SyntaxException e) {
+      return "syntax error";
+    }
+  }
+  
+  private static String print(AST ast) {
+    var bytes = new ByteArrayOutputStream();
+    new ASTPrinter(new PrintStream(bytes, true, StandardCharsets.UTF_8)).visit(ast);
+    return bytes.toString(StandardCharsets.UTF_8);
+  }
+  
+  private static String difference(String expected, String actual) {
+    String[] expectedLines = expected.split("\n"), actualLines = actual.split("\n");
+    for (var i = 0; i < Math.max(expectedLines.length, actualLines.length); i++) {
+      var want = i < expectedLines.length ? expectedLines[i] : "<end>";
+      var got = i < actualLines.length ? actualLines[i] : "<end>";
+      if (!want.equals(got)) return "line " + (i + 1) + " expected '" + want.strip() + "' but got '" + got.strip() + '\'';
+    }
+    return "outputs differ";
+  }
+  
+}
\ No newline at end of file
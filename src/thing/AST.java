@@ -5,19 +5,50 @@ import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.function.ToDoubleFunction;
 
-import org.antlr.v4.runtime.Token;
-
 abstract class AST {
   
+  private int position = 0;
+  private boolean binds = false;
+  
   private AST() {}
   
+  public static <N extends AST> N at(N node, int line, int column) {
+    return at(node, Math.min(line, 0xFFFFF) << 12 | Math.min(column, 0xFFF));
+  }
+  
+  public static <N extends AST> N at(N node, int position) {
+    ((AST) node).position = position;
+    return node;
+  }
+  
+  public static <N extends AST> N binding(N node) {
+    ((AST) node).binds = true;
+    return node;
+  }
+  
+  public int position() {
+    return position;
+  }
+  
+  public int line() {
+    return position >>> 12;
+  }
+  
+  public int column() {
+    return position & 0xFFF;
+  }
+  
+  public boolean binds() {
+    return binds;
+  }
+  
   public abstract <R> R accept(ASTVisitor<R> visitor);
   
   public static final class DefsNode extends AST {
     
-    public final Iterable<DefNode> defs;
+    public final DefNode[] defs;
     
-    public DefsNode(Iterable<DefNode> defs) {
+    public DefsNode(DefNode[] defs) {
       this.defs = defs;
     }
     
@@ -48,12 +79,18 @@ abstract class AST {
   
   public static final class ParamsNode extends AST {
     
-    public final Iterable<DefNode> params;
+    public final DefNode[] params;
     public final String varargs;
+    public final int[] varargsPath;
     
-    public ParamsNode(Iterable<DefNode> params, String varargs) {
+    public ParamsNode(DefNode[] params, String varargs, int[] varargsPath) {
       this.params = params;
       this.varargs = varargs;
+      this.varargsPath = varargsPath;
+    }
+    
+    public ParamsNode(DefNode[] params, String varargs) {
+      this(params, varargs, null);
     }
     
     @Override
@@ -83,14 +120,21 @@ abstract class AST {
   public static final class LoopNode extends AST {
     
     public final AST init, condition, loopEnd, loop, noLoop, combinator;
+    public final boolean counted, observed;
     
-    public LoopNode(AST init, AST condition, AST loopEnd, AST loop, AST noLoop, AST combinator) {
+    public LoopNode(AST init, AST condition, AST loopEnd, AST loop, AST noLoop, AST combinator, boolean counted, boolean observed) {
       this.init = init;
       this.condition = condition;
       this.loopEnd = loopEnd;
       this.loop = loop;
       this.noLoop = noLoop;
       this.combinator = combinator;
+      this.counted = counted;
+      this.observed = observed;
+    }
+    
+    public LoopNode(AST init, AST condition, AST loopEnd, AST loop, AST noLoop, AST combinator) {
+      this(init, condition, loopEnd, loop, noLoop, combinator, false, true);
     }
     
     @Override
@@ -104,13 +148,20 @@ abstract class AST {
     
     public final String name;
     public final AST iterable, loop, noLoop, combinator;
+    public final boolean counted, observed;
     
-    public IteratorNode(String name, AST iterable, AST loop, AST noLoop, AST combinator) {
+    public IteratorNode(String name, AST iterable, AST loop, AST noLoop, AST combinator, boolean counted, boolean observed) {
       this.name = name;
       this.iterable = iterable;
       this.loop = loop;
       this.noLoop = noLoop;
       this.combinator = combinator;
+      this.counted = counted;
+      this.observed = observed;
+    }
+    
+    public IteratorNode(String name, AST iterable, AST loop, AST noLoop, AST combinator) {
+      this(name, iterable, loop, noLoop, combinator, false, true);
     }
     
     @Override
@@ -124,12 +175,20 @@ abstract class AST {
     
     public final AST throwing, handler, always;
     public final String name;
+    public final int[] namePath;
+    public final boolean brother;
     
-    public ExceptionNode(AST throwing, AST handler, AST always, String name) {
+    public ExceptionNode(AST throwing, AST handler, AST always, String name, int[] namePath, boolean brother) {
       this.throwing = throwing;
       this.handler = handler;
       this.always = always;
       this.name = name;
+      this.namePath = namePath;
+      this.brother = brother;
+    }
+    
+    public ExceptionNode(AST throwing, AST handler, AST always, String name) {
+      this(throwing, handler, always, name, null, false);
     }
     
     @Override
@@ -173,7 +232,7 @@ abstract class AST {
     }
     
     public BinOpNode withOperands(AST left, AST right) {
-      return new BinOpNode(left, right, op, assign);
+      return at(new BinOpNode(left, right, op, assign), position());
     }
     
     @Override
@@ -194,7 +253,7 @@ abstract class AST {
     }
     
     public UnOpNode withOperand(AST operand) {
-      return new UnOpNode(operand, op);
+      return at(new UnOpNode(operand, op), position());
     }
     
     @Override
@@ -217,7 +276,7 @@ abstract class AST {
     }
     
     public ModOpNode withOperand(AST operand, boolean after) {
-      return new ModOpNode(operand, op, after);
+      return at(new ModOpNode(operand, op, after), position());
     }
     
     @Override
@@ -286,9 +345,10 @@ abstract class AST {
   public static final class CallNode extends AST {
     
     public final AST callee;
-    public final Iterable<AST> args;
+    public final AST[] args;
+    public final Value.Function.Cache cache = new Value.Function.Cache();
     
-    public CallNode(AST callee, Iterable<AST> args) {
+    public CallNode(AST callee, AST[] args) {
       this.callee = callee;
       this.args = args;
     }
@@ -304,6 +364,7 @@ abstract class AST {
     
     public final AST object, member;
     public final boolean optional;
+    public final Value.Object.Cache cache = new Value.Object.Cache();
     
     public MemberNode(AST object, AST member, boolean optional) {
       this.object = object;
@@ -321,9 +382,17 @@ abstract class AST {
   public static final class VarNode extends AST {
     
     public final String name;
+    public final int[] path;
+    public final Value.String key;
     
-    public VarNode(String name) {
+    public VarNode(String name, int[] path) {
       this.name = name;
+      this.path = path;
+      key = Value.String.intern(name);
+    }
+    
+    public VarNode(String name) {
+      this(name, null);
     }
     
     @Override
@@ -353,9 +422,9 @@ abstract class AST {
   public static final class ObjNode extends AST {
     
     public final AST meta;
-    public final Iterable<FieldNode> fields;
+    public final FieldNode[] fields;
     
-    public ObjNode(AST meta, Iterable<FieldNode> fields) {
+    public ObjNode(AST meta, FieldNode[] fields) {
       this.meta = meta;
       this.fields = fields;
     }
@@ -387,15 +456,50 @@ abstract class AST {
   
   public static final class StringNode extends AST {
     
-    public final String value;
+    public final Value.String value;
     
-    public StringNode(String value) {
+    public StringNode(Value.String value) {
       this.value = value;
     }
     
-    public static StringNode of(Token token) {
-      var value = token.getText();
-      return new StringNode(value.substring(1, value.length() - 1));
+    public StringNode(String value) {
+      this(Value.String.intern(value));
+    }
+    
+    public static StringNode of(String literal) {
+      return new StringNode(unescape(literal.substring(1, literal.length() - 1)));
+    }
+    
+    private static String unescape(String text) {
+      var escape = text.indexOf('\\');
+      if (escape < 0) return text;
+      var builder = new StringBuilder(text.length());
+      var start = 0;
+      for (; escape >= 0; escape = text.indexOf('\\', start)) {
+        builder.append(text, start, escape);
+        if (escape + 1 == text.length()) throw new LiteralException("invalid escape sequence");
+        var c = text.charAt(escape + 1);
+        start = escape + 2;
+        switch (c) {
+          case 'u': {
+            var end = start;
+            while (end < text.length() && end < start + 4 && "0123456789ABCDEFabcdef".indexOf(text.charAt(end)) > -1) end++;
+            if (end == start) throw new LiteralException("invalid escape sequence");
+            builder.append((char) Integer.parseInt(text, start, end, 0x10));
+            start = end;
+            break;
+          }
+          case 'b': builder.append('\b'); break;
+          case 't': builder.append('\t'); break;
+          case 'n': builder.append('\n'); break;
+          case 'f': builder.append('\f'); break;
+          case 'r': builder.append('\r'); break;
+          case '"': case '`': case '\\': builder.append(c); break;
+          case '\n': case '\r': case '\u0085': case '\u2028': case '\u2029': builder.append('\\').append(c); break;
+          default: throw new LiteralException("invalid escape sequence");
+        }
+      }
+      return builder.append(text, start, text.length()).toString();
     }
     
     @Override
@@ -407,14 +511,18 @@ abstract class AST {
   
   public static final class NumberNode extends AST {
     
-    public final double value;
+    public final Value.Number value;
     
-    public NumberNode(double value) {
+    public NumberNode(Value.Number value) {
       this.value = value;
     }
     
-    public static NumberNode of(Token token) {
-      var source = token.getText();
+    public NumberNode(double value) {
+      this(Value.Number.of(value));
+    }
+    
+    public static NumberNode of(String source) {
+      source = source.replace("_", "");
       var radix = source.length() < 2 ? 0 : source.charAt(1);
       if (source.charAt(0) == '0' && "dxob".indexOf(radix) > -1) source = source.substring(2);
       else radix = 0;
@@ -0,0 +1,80 @@
+package thing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import static thing.AST.*;
+
+class ASTCache {
+  
+  public static final String EXTENSION = ".thingc";
+  private static final int MAGIC = 0x54484E47, VERSION = 3, HASH_LENGTH = 32;
+  
+  private final Path directory;
+  private final Names names;
+  
+  public ASTCache(Path directory, Names names) {
+    this.directory = directory;
+    this.names = names;
+  }
+  
+  public static byte[] hash(byte[] source) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(source);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+  
+  public DefsNode load(Path source, byte[] hash) {
+    var file = file(source, hash);
+    if (!Files.isRegularFile(file)) return null;
+    try {
+      var in = ByteBuffer.wrap(Files.readAllBytes(file));
+      if (in.remaining() < 8 + HASH_LENGTH || in.getInt() != MAGIC || in.getInt() != VERSION) return null;
+      var stored = new byte[HASH_LENGTH];
+      in.get(stored);
+      if (!Arrays.equals(stored, hash)) return null;
+      var ast = ASTSerializer.deserialize(in, names);
+      return ast instanceof DefsNode ? (DefsNode) ast : null;
+    } catch (IOException | DataException e) {
+      return null;
+    }
+  }
+  
+  public void store(Path source, byte[] hash, DefsNode ast) {
+    var file = file(source, hash);
+    var body = ASTSerializer.serialize(ast);
+    var out = ByteBuffer.allocate(8 + HASH_LENGTH + body.length).putInt(MAGIC).putInt(VERSION).put(hash).put(body);
+    try {
+      if (directory != null) Files.createDirectories(directory);
+      var temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+      try {
+        Files.write(temp, out.array());
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    } catch (IOException e) {
+      // the cache is only an optimization; failing to write it must not fail the run
+    }
+  }
+  
+  private Path file(Path source, byte[] hash) {
+    if (directory != null) {
+      var name = new StringBuilder();
+      for (var b : hash) name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      return directory.resolve(name.append(EXTENSION).toString());
+    }
+    var name = source.getFileName().toString();
+    if (name.endsWith(".thing")) name = name.substring(0, name.length() - ".thing".length());
+    return source.resolveSibling(name + EXTENSION);
+  }
+  
+}
\ No newline at end of file
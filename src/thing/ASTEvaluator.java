@@ -1,51 +1,58 @@
 package thing;
 
 import java.io.Closeable;
-import java.util.List;
+import java.util.Set;
 import java.util.Stack;
 import java.util.HashMap;
 import java.util.ArrayList;
-import java.util.function.Supplier;
-import java.util.regex.Pattern;
+import java.util.LinkedHashSet;
+import java.util.Iterator;
+import java.util.function.BinaryOperator;
 
 import static thing.AST.*;
 
 class ASTEvaluator implements ASTVisitor<Value> {
   
-  Scope scope = Scope.empty();
+  private final Value.Object.Shape shapes = Value.Object.Shape.root();
+  Scope scope = Scope.empty(shapes);
   private Value.Object currentObject = null;
   private Value thisVal = null;
   private boolean writeThis = false;
+  private RuntimeException failure = null;
+  private AST failed = null;
+  long scopes = 0, elided = 0;
+  private final Set<MemberNode> sites = new LinkedHashSet<>();
+  private final Set<CallNode> calls = new LinkedHashSet<>();
   
-  private Value get(String name) {
-    return scope.get(name);
+  private Value get(VarNode node) {
+    return scope.get(node.key, node.path);
   }
   
-  private Value set(String name, Value value) {
-    scope.set(name, value);
+  private Value set(VarNode node, Value value) {
+    scope.set(node.key, node.path, value);
     return value;
   }
   
-  private Value define(String name, Value value, boolean mutable) {
-    scope.define(name, value, mutable);
+  private Value define(VarNode node, Value value, boolean mutable) {
+    scope.define(node.key, node.path, value, mutable);
     return value;
   }
   
-  private Value get(Value object, Value member, boolean optional) {
+  private Value get(Value object, Value member, MemberNode site) {
     if (!(object instanceof Value.Object)) object = object.getMetaobject();
-    var value = ((Value.Object) object).get(member);
+    var value = ((Value.Object) object).get(member, cache(site));
     if (value == null) {
-      if (optional) value = Value.Nil.VALUE;
+      if (site.optional) value = Value.Nil.VALUE;
       else throw new DataException("missing object member");
     }
     return value;
   }
   
-  private Value set(Value object, Value member, Value value, boolean optional) {
+  private Value set(Value object, Value member, Value value, MemberNode site) {
     if (!(object instanceof Value.Object)) object = object.getMetaobject();
-    value = ((Value.Object) object).set(member, value);
+    value = ((Value.Object) object).set(member, value, cache(site));
     if (value == null) {
-      if (optional) value = Value.Nil.VALUE;
+      if (site.optional) value = Value.Nil.VALUE;
       else throw new DataException("missing object member");
     }
     return value;
@@ -61,13 +68,53 @@ class ASTEvaluator implements ASTVisitor<Value> {
     return value;
   }
   
-  private AutoScope scope() {
-    return new AutoScope();
+  public AST failedAt(RuntimeException e) {
+    return e == failure ? failed : null;
+  }
+  
+  private RuntimeException locate(RuntimeException e, AST node) {
+    if (e != failure && node.position() != 0 && !(e instanceof JumpNode.Exception) && !(e instanceof SpreadException)) {
+      failure = e;
+      failed = node;
+    }
+    return e;
+  }
+  
+  public String report() {
+    long hits = 0, misses = 0;
+    var megamorphic = new StringBuilder();
+    for (var site : sites) {
+      hits += site.cache.hits;
+      misses += site.cache.misses;
+      if (site.cache.megamorphic()) megamorphic.append(megamorphic.length() == 0 ? ", megamorphic at " : ", ").append(site.line()).append(':').append(site.column());
+    }
+    long direct = 0, resolved = 0;
+    for (var call : calls) {
+      direct += call.cache.hits;
+      resolved += call.cache.misses;
+    }
+    return "allocated " + scopes + " scopes, elided " + elided + "; member caches hit " + hits + " times and missed " + misses + " times at " + sites.size() + " sites" + megamorphic + "; calls reused their target " + direct + " times and resolved it " + resolved + " times at " + calls.size() + " sites";
+  }
+  
+  private Value.Object.Cache cache(MemberNode site) {
+    if (site.cache.misses == 0) sites.add(site);
+    return site.cache;
+  }
+  
+  private Value.Function.Cache cache(CallNode call) {
+    if (call.cache.misses == 0) calls.add(call);
+    return call.cache;
+  }
+  
+  private AutoScope scope(boolean binds) {
+    if (binds) return new AutoScope();
+    elided++;
+    return null;
   }
   
-  private <R> R scope(Supplier<R> scoped) {
-    try (var scope = scope()) {
-      return scoped.get();
+  private Value scoped(AST node) {
+    try (var scope = scope(node.binds())) {
+      return node.accept(this);
     }
   }
   
@@ -77,6 +124,7 @@ class ASTEvaluator implements ASTVisitor<Value> {
   
   private void brotherScope() {
     scope = scope.brother();
+    scopes++;
   }
   
   public Value visitDefs(DefsNode node) {
@@ -86,19 +134,23 @@ class ASTEvaluator implements ASTVisitor<Value> {
   }
   
   public Value visitDef(DefNode node) {
-      if (node.def instanceof VarNode) return define(((VarNode) node.def).name, node.value == null ? null : scope(() -> node.value.accept(this)), node.mutable);
+    try {
+      if (node.def instanceof VarNode) return define((VarNode) node.def, node.value == null ? null : scoped(node.value), node.mutable);
       if (node.def instanceof MemberNode) {
         var def = (MemberNode) node.def;
         Value object = null, member = null, value = null;
-        try (var scope = scope()) {
+        try (var scope = scope(def.binds() || node.value != null && node.value.binds())) {
           object = def.object.accept(this);
           member = def.member.accept(this);
           if (node.value != null) value = node.value.accept(this);
         }
         return define(object, member, value, def.optional, node.mutable);
       }
-      if (node.def == null) return scope(() -> node.value.accept(this));
+      if (node.def == null) return scoped(node.value);
       throw new DataException("invalid definition");
+    } catch (RuntimeException e) {
+      throw locate(e, node);
+    }
   }
   
   public Value visitParams(ParamsNode node) {
@@ -107,132 +159,225 @@ class ASTEvaluator implements ASTVisitor<Value> {
   
   public Value visitBranch(BranchNode node) {
     var condition = Value.Bool.of(node.condition.accept(this)).value;
-    try (var branch = scope()) {
-      return condition ? node.tBranch.accept(this) : node.fBranch == null ? Value.Nil.VALUE : node.fBranch.accept(this);
-    }
+    if (condition) return scoped(node.tBranch);
+    return node.fBranch == null ? Value.Nil.VALUE : scoped(node.fBranch);
   }
   
   public Value visitLoop(LoopNode node) {
     Value value = null;
-    try (var whole = scope()) {
-      var combinator = node.combinator == null ? null : Value.Function.functor(node.combinator.accept(this));
-      if (node.combinator != null && combinator == null) throw new TypeException("loop combinators must be functors");
+    try (var whole = scope(node.combinator != null && node.combinator.binds() || node.init != null && node.init.binds())) {
+      var combinator = combinator(node.combinator);
       if (node.init != null) node.init.accept(this);
-      var done = false;
-      while (!done && scope(() -> Value.Bool.of(node.condition.accept(this))).value) {
-        try (var loop = scope()) {
-          if (value == null || combinator == null) value = node.loop.accept(this);
-          else value = combinator.call(List.of(value, node.loop.accept(this)));
+      var counter = node.counted ? get((VarNode) ((DefNode) node.init).def) : null;
+      if (counter instanceof Value.Number) value = count(node, combinator, ((Value.Number) counter).value);
+      else for (var done = false; !done && Value.Bool.of(scoped(node.condition)).value;) {
+        try (var loop = scope(node.loop.binds())) {
+          value = combine(combinator, value, node.loop.accept(this));
         } catch (JumpNode.Exception e) {
           if (e.type == JumpNode.Type.BREAK || e.type == JumpNode.Type.CONTINUE) {
-            if (value == null || combinator == null) value = e.value;
-            else value = combinator.call(List.of(value, e.value));
+            value = combine(combinator, value, e.value);
             if (e.type == JumpNode.Type.BREAK) done = true;
           } else {
             throw e;
           }
         }
-        if (node.loopEnd != null) try (var loopEnd = scope()) {
-          node.loopEnd.accept(this);
-        }
-      }
-      if (value == null && node.noLoop != null) try (var noLoop = scope()) {
-        value = node.noLoop.accept(this);
+        if (node.loopEnd != null) scoped(node.loopEnd);
       }
+      if (value == null && node.noLoop != null) value = scoped(node.noLoop);
     }
     return value;
   }
   
   public Value visitIterator(IteratorNode node) {
     Value value = null;
-    try (var whole = scope()) {
-      var combinator = node.combinator == null ? null : Value.Function.functor(node.combinator.accept(this));
-      if (node.combinator != null && combinator == null) throw new TypeException("loop combinators must be functors");
-      for (var element : Value.Object.iterable(node.iterable.accept(this))) try (var loop = scope()) {
-        if (node.name != null) define(node.name, element, true);
-        if (value == null || combinator == null) value = node.loop.accept(this);
-        else value = combinator.call(List.of(value, node.loop.accept(this)));
+    try (var whole = scope(node.combinator != null && node.combinator.binds() || node.iterable.binds())) {
+      var combinator = combinator(node.combinator);
+      for (var element : node.counted ? range(node) : Value.Object.iterable(node.iterable.accept(this))) try (var loop = scope(node.name != null || node.loop.binds())) {
+        if (node.name != null && element != null) scope.define(0, node.name, element, true);
+        value = combine(combinator, value, node.loop.accept(this));
       } catch (JumpNode.Exception e) {
         if (e.type == JumpNode.Type.BREAK || e.type == JumpNode.Type.CONTINUE) {
-          if (value == null || combinator == null) value = e.value;
-          else value = combinator.call(List.of(value, e.value));
+          value = combine(combinator, value, e.value);
           if (e.type == JumpNode.Type.BREAK) break;
         } else {
           throw e;
         }
       }
-      if (value == null && node.noLoop != null) try (var noLoop = scope()) {
-        value = node.noLoop.accept(this);
+      if (value == null && node.noLoop != null) value = scoped(node.noLoop);
+    }
+    return value;
+  }
+  
+  private Value count(LoopNode node, BinaryOperator<Value> combinator, double counter) {
+    var variable = (VarNode) ((DefNode) node.init).def;
+    var condition = (BinOpNode) node.condition;
+    var step = ASTLoopCounter.step(node.loopEnd);
+    Value value = null;
+    try {
+      for (var done = false; !done; counter += step) {
+        var limit = condition.right.accept(this);
+        if (limit instanceof Value.Number) {
+          if (!ASTLoopCounter.compare(condition.op, counter, ((Value.Number) limit).value)) break;
+        } else {
+          set(variable, Value.Number.of(counter));
+          if (!Value.Bool.of(condition.accept(this)).value) break;
+        }
+        if (node.observed) set(variable, Value.Number.of(counter));
+        try (var loop = scope(node.loop.binds())) {
+          value = combine(combinator, value, node.loop.accept(this));
+        } catch (JumpNode.Exception e) {
+          if (e.type == JumpNode.Type.BREAK || e.type == JumpNode.Type.CONTINUE) {
+            value = combine(combinator, value, e.value);
+            if (e.type == JumpNode.Type.BREAK) done = true;
+          } else {
+            throw e;
+          }
+        }
       }
+    } finally {
+      set(variable, Value.Number.of(counter));
     }
     return value;
   }
   
+  private Iterable<Value> range(IteratorNode node) {
+    var range = (BinOpNode) node.iterable;
+    Value left = range.left.accept(this), right = range.right.accept(this);
+    if (!(left instanceof Value.Number) || !(right instanceof Value.Number) || Math.round(((Value.Number) left).value) != ((Value.Number) left).value || Math.round(((Value.Number) right).value) != ((Value.Number) right).value) {
+      try {
+        return Value.Object.iterable(range.op.operate(left, right));
+      } catch (RuntimeException e) {
+        throw locate(e, range);
+      }
+    }
+    long start = Math.round(((Value.Number) left).value), end = Math.round(((Value.Number) right).value);
+    var observed = node.observed;
+    return () -> new Iterator<>() {
+      private long next = start;
+      private boolean done = false;
+      
+      public boolean hasNext() {
+        return !done;
+      }
+      
+      public Value next() {
+        var current = next;
+        done = current == end;
+        next += start > end ? -1 : 1;
+        return observed ? Value.Number.of(current) : null;
+      }
+    };
+  }
+  
+  private BinaryOperator<Value> combinator(AST node) {
+    if (node == null) return null;
+    var operator = operator(node);
+    if (operator != null) return (left, right) -> {
+      try {
+        return operator.op.operate(left, right);
+      } catch (RuntimeException e) {
+        throw locate(e, operator);
+      }
+    };
+    var combinator = Value.Function.functor(node.accept(this));
+    if (combinator == null) throw new TypeException("loop combinators must be functors");
+    return (left, right) -> combinator.apply(null, left, right);
+  }
+  
+  private static BinOpNode operator(AST node) {
+    if (!(node instanceof FuncNode)) return null;
+    var func = (FuncNode) node;
+    var params = func.params.params;
+    if (params.length != 2 || func.params.varargs != null || !(func.body instanceof BinOpNode)) return null;
+    var body = (BinOpNode) func.body;
+    if (body.assign || !(body.left instanceof VarNode) || !(body.right instanceof VarNode)) return null;
+    for (var param : params) if (param.value != null || !(param.def instanceof VarNode) || ((VarNode) param.def).name.equals(Value.Function.THIS)) return null;
+    String left = ((VarNode) params[0].def).name, right = ((VarNode) params[1].def).name;
+    return !left.equals(right) && left.equals(((VarNode) body.left).name) && right.equals(((VarNode) body.right).name) ? body : null;
+  }
+  
+  private static Value combine(BinaryOperator<Value> combinator, Value value, Value next) {
+    return value == null || combinator == null ? next : combinator.apply(value, next);
+  }
+  
   public Value visitException(ExceptionNode node) {
     Value value;
     JumpNode.Exception jump = null;
-    try (var throwing = scope()) {
-      value = node.throwing.accept(this);
+    try {
+      value = scoped(node.throwing);
     } catch (JumpNode.Exception e) {
-      brotherScope();
+      if (node.brother) brotherScope();
       if (e.type != JumpNode.Type.THROW) jump = e;
-      if (node.name != null) define(node.name, e.value, true);
+      if (node.name != null) scope.define(node.namePath[0], node.name, e.value, true);
       if (node.handler == null) return Value.Nil.VALUE;
       value = node.handler.accept(this);
     }
-    if (node.always != null) try (var always = scope()) {
-      node.always.accept(this);
-    }
+    if (node.always != null) scoped(node.always);
     if (jump != null) throw jump;
     return value;
   }
   
   public Value visitScope(ScopeNode node) {
-    var implicit = node.implicit.accept(this);
-    if (implicit instanceof Value.Nil) return node.value.accept(this);
-    if (!(implicit instanceof Value.Object)) throw new TypeException("with scopes must be objects");
-    try (var with = withScope((Value.Object) implicit)) {
-      return node.value.accept(this);
+    try {
+      var implicit = node.implicit.accept(this);
+      if (!(implicit instanceof Value.Object) && !(implicit instanceof Value.Nil)) throw new TypeException("with scopes must be objects");
+      try (var with = withScope(implicit instanceof Value.Object ? (Value.Object) implicit : null)) {
+        return node.value.accept(this);
+      }
+    } catch (RuntimeException e) {
+      throw locate(e, node);
     }
   }
   
   public Value visitBinOp(BinOpNode node) {
-    if (node.assign) {
-      if (node.left instanceof VarNode) {
-        var left = (VarNode) node.left;
-        return node.op == null ? set(left.name, node.right.accept(this)) : set(left.name, node.op.operate(get(left.name), node.right.accept(this)));
-      }
-      if (node.left instanceof MemberNode) {
-        var left = (MemberNode) node.left;
-        Value object = left.object.accept(this), member = left.member.accept(this);
-        return node.op == null ? set(object, member, node.right.accept(this), left.optional) : set(object, member, node.op.operate(get(object, member, left.optional), node.right.accept(this)), left.optional);
+    try {
+      if (node.assign) {
+        if (node.left instanceof VarNode) {
+          var left = (VarNode) node.left;
+          return node.op == null ? set(left, node.right.accept(this)) : set(left, node.op.operate(get(left), node.right.accept(this)));
+        }
+        if (node.left instanceof MemberNode) {
+          var left = (MemberNode) node.left;
+          Value object = left.object.accept(this), member = left.member.accept(this);
+          return node.op == null ? set(object, member, node.right.accept(this), left) : set(object, member, node.op.operate(get(object, member, left), node.right.accept(this)), left);
+        }
+        throw new DataException("bad assignment");
+      } else {
+        return node.op.operate(node.left.accept(this), node.right.accept(this));
       }
-      throw new DataException("bad assignment");
-    } else {
-      return node.op.operate(node.left.accept(this), node.right.accept(this));
+    } catch (RuntimeException e) {
+      throw locate(e, node);
     }
   }
   
   public Value visitUnOp(UnOpNode node) {
-    return node.op.operate(node.operand.accept(this));
+    try {
+      return node.op.operate(node.operand.accept(this));
+    } catch (RuntimeException e) {
+      throw locate(e, node);
+    }
   }
   
   public Value visitModOp(ModOpNode node) {
-    if (node.operand instanceof VarNode) {
-      var operand = (VarNode) node.operand;
-      var value = get(operand.name);
-      if (node.after) set(operand.name, node.op.operate(value));
-      else value = set(operand.name, node.op.operate(value));
-      return value;
-    }
-    if (node.operand instanceof MemberNode) {
-      var operand = (MemberNode) node.operand;
-      Value object = operand.object.accept(this), member = operand.member.accept(this), value = get(object, member, operand.optional);
-      if (node.after) set(object, member, node.op.operate(value), operand.optional);
-      else value = set(object, member, node.op.operate(value), operand.optional);
-      return value;
+    try {
+      if (node.operand instanceof VarNode) {
+        var operand = (VarNode) node.operand;
+        var value = get(operand);
+        if (node.after) set(operand, node.op.operate(value));
+        else value = set(operand, node.op.operate(value));
+        return value;
+      }
+      if (node.operand instanceof MemberNode) {
+        var operand = (MemberNode) node.operand;
+        Value object = operand.object.accept(this), member = operand.member.accept(this), value = get(object, member, operand);
+        if (node.after) set(object, member, node.op.operate(value), operand);
+        else value = set(object, member, node.op.operate(value), operand);
+        return value;
+      }
+      throw new DataException("bad assignment");
+    } catch (RuntimeException e) {
+      throw locate(e, node);
     }
-    throw new DataException("bad assignment");
   }
   
   public Value visitJump(JumpNode node) {
@@ -244,83 +389,96 @@ class ASTEvaluator implements ASTVisitor<Value> {
   }
   
   public Value visitCall(CallNode node) {
-    var thisValBefore = thisVal;
-    writeThis = node.callee instanceof MemberNode;
-    var callee = node.callee.accept(this);
-    var thisArg = callee instanceof Value.Function ? thisVal : callee;
-    callee = Value.Function.functor(callee);
-    thisVal = thisValBefore;
-    if (callee == null) throw new TypeException("only functors can be called");
-    var args = new ArrayList<Value>();
-    for (var arg : node.args) try {
-      args.add(arg.accept(this));
+    try {
+      var thisValBefore = thisVal;
+      writeThis = node.callee instanceof MemberNode;
+      var callee = node.callee.accept(this);
+      var thisArg = callee instanceof Value.Function ? thisVal : callee;
+      var function = Value.Function.functor(callee, cache(node));
+      thisVal = thisValBefore;
+      if (function == null) throw new TypeException("only functors can be called");
+      return function.apply(thisArg, arguments(node.args));
+    } catch (RuntimeException e) {
+      throw locate(e, node);
+    }
+  }
+  
+  private Value[] arguments(AST[] nodes) {
+    var args = new Value[nodes.length];
+    ArrayList<Value> spread = null;
+    for (var i = 0; i < nodes.length; i++) try {
+      var arg = nodes[i].accept(this);
+      if (spread == null) args[i] = arg;
+      else spread.add(arg);
     } catch (SpreadException e) {
-      Value.Object.iterable(e.value).forEach(args::add);
+      if (spread == null) {
+        spread = new ArrayList<>();
+        for (var j = 0; j < i; j++) spread.add(args[j]);
+      }
+      Value.Object.iterable(e.value).forEach(spread::add);
     }
-    return ((Value.Function) callee).apply(thisArg, args);
+    return spread == null ? args : spread.toArray(new Value[spread.size()]);
   }
   
   public Value visitMember(MemberNode node) {
-    var writeThisBefore = writeThis;
-    writeThis = false;
-    return get(writeThisBefore ? thisVal = node.object.accept(this) : node.object.accept(this), node.member.accept(this), node.optional);
+    try {
+      var writeThisBefore = writeThis;
+      writeThis = false;
+      return get(writeThisBefore ? thisVal = node.object.accept(this) : node.object.accept(this), node.member.accept(this), node);
+    } catch (RuntimeException e) {
+      throw locate(e, node);
+    }
   }
   
   public Value visitVar(VarNode node) {
-    return get(node.name);
+    try {
+      return get(node);
+    } catch (RuntimeException e) {
+      throw locate(e, node);
+    }
   }
   
   public Value visitFunc(FuncNode node) {
-    var params = new ArrayList<String>();
-    var defaults = new ArrayList<Value>();
-    for (var param : node.params.params) {
+    var params = new String[node.params.params.length];
+    var slots = new int[params.length + 1];
+    var defaults = new Value[params.length];
+    for (var i = 0; i < params.length; i++) {
+      var param = node.params.params[i];
       if (!(param.def instanceof VarNode)) throw new DataException("params must be simple ids");
-      params.add(((VarNode) param.def).name);
-      defaults.add(param.value == null ? null : param.value.accept(this));
+      params[i] = ((VarNode) param.def).name;
+      slots[i] = ((VarNode) param.def).path[0];
+      defaults[i] = param.value == null ? null : param.value.accept(this);
     }
-    return Value.Function.of(this, params.toArray(new String[params.size()]), defaults.toArray(new Value[defaults.size()]), node.params.varargs, node.body, scope);
+    if (node.params.varargs != null) slots[params.length] = node.params.varargsPath[0];
+    return Value.Function.of(this, params, slots, defaults, node.params.varargs, node.body, scope);
   }
   
   public Value visitObj(ObjNode node) {
     var meta = node.meta == null ? null : node.meta.accept(this);
     if (meta != null && !(meta instanceof Value.Object)) throw new TypeException("metaobjects must be objects");
-    Value.Object oldObject = currentObject, value = currentObject = Value.Object.of((Value.Object) meta);
+    Value.Object oldObject = currentObject, value = currentObject = Value.Object.of(shapes, (Value.Object) meta);
     for (var field : node.fields) field.accept(this);
     currentObject = oldObject;
     return value;
   }
   
   public Value visitField(FieldNode node) {
-    Value key = null, value = null;
-    try (var scope = scope()) {
-      if (node.key != null) key = node.key.accept(this);
-      if (key != null) brotherScope();
-      if (node.value != null) value = node.value.accept(this);
+    try {
+      Value key = null, value = null;
+      if (node.key != null) key = scoped(node.key);
+      if (node.value != null) value = scoped(node.value);
+      return key == null ? value : define(currentObject, key, value, node.mutable, false);
+    } catch (RuntimeException e) {
+      throw locate(e, node);
     }
-    return key == null ? value : define(currentObject, key, value, node.mutable, false);
   }
   
   public Value visitString(StringNode node) {
-    var value = node.value;
-    value = Pattern.compile("\\\\(u[0-9A-Fa-f]{1,4}|.)").matcher(value).replaceAll(match -> {
-      switch (match.group().charAt(1)) {
-        case 'u': return new String(Character.toChars(Integer.valueOf(match.group().substring(2), 0x10)));
-        case 'b': return "\b";
-        case 't': return "\t";
-        case 'n': return "\n";
-        case 'f': return "\f";
-        case 'r': return "\r";
-        case '"': return "\"";
-        case '`': return "`";
-        case '\\': return "\\";
-      }
-      throw new LiteralException("invalid escape sequence");
-    });
-    return Value.String.of(value);
+    return node.value;
   }
   
   public Value visitNumber(NumberNode node) {
-    return Value.Number.of(node.value);
+    return node.value;
   }
   
   public Value visitBool(BoolNode node) {
@@ -335,10 +493,12 @@ class ASTEvaluator implements ASTVisitor<Value> {
     
     public AutoScope() {
       scope = scope.child();
+      scopes++;
     }
     
     public AutoScope(Value.Object with) {
       scope = scope.with(with);
+      scopes++;
     }
     
     @Override
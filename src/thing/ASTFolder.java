@@ -0,0 +1,114 @@
+package thing;
+
+import static thing.AST.*;
+
+// folds constant operations and conditions and drops constants before a `;`;
+// anything that would fail is left as it is for the evaluator to report
+class ASTFolder extends ASTRewriter {
+  
+  private static final int MAX_STRING = 1 << 12;
+  
+  @Override
+  protected AST target(AST node) {
+    var rewritten = visit(node);
+    return rewritten != null && rewritten.getClass() == node.getClass() ? rewritten : node;
+  }
+  
+  @Override
+  public AST visitBranch(BranchNode node) {
+    var rewritten = super.visitBranch(node);
+    if (!(rewritten instanceof BranchNode)) return rewritten;
+    var branch = (BranchNode) rewritten;
+    var condition = constant(branch.condition);
+    if (condition == null) return branch;
+    var taken = Value.Bool.of(condition).value ? branch.tBranch : branch.fBranch;
+    if (taken == null) return NilNode.VALUE;
+    return declares(taken) ? branch : taken;
+  }
+  
+  @Override
+  public AST visitBinOp(BinOpNode node) {
+    var rewritten = super.visitBinOp(node);
+    if (!(rewritten instanceof BinOpNode)) return rewritten;
+    var binOp = (BinOpNode) rewritten;
+    if (binOp.assign) return binOp;
+    if (binOp.op == Value.BinOpFunc.SEQUENCE) return constant(binOp.left) == null ? binOp : binOp.right;
+    if (binOp.op == Value.BinOpFunc.RANGE) return binOp;
+    Value left = constant(binOp.left), right = constant(binOp.right);
+    if (left == null || right == null) return binOp;
+    if (binOp.op == Value.BinOpFunc.MUL && !smallRepeat(left, right)) return binOp;
+    try {
+      return literal(binOp.op.operate(left, right), binOp);
+    } catch (RuntimeException e) {
+      return binOp;
+    }
+  }
+  
+  @Override
+  public AST visitUnOp(UnOpNode node) {
+    var rewritten = super.visitUnOp(node);
+    if (!(rewritten instanceof UnOpNode)) return rewritten;
+    var unOp = (UnOpNode) rewritten;
+    if (unOp.op == Value.UnOpFunc.SPREAD) return unOp;
+    var operand = constant(unOp.operand);
+    if (operand == null) return unOp;
+    try {
+      return literal(unOp.op.operate(operand), unOp);
+    } catch (RuntimeException e) {
+      return unOp;
+    }
+  }
+  
+  private static Value constant(AST node) {
+    if (node instanceof StringNode) return ((StringNode) node).value;
+    if (node instanceof NumberNode) return ((NumberNode) node).value;
+    if (node instanceof BoolNode) return Value.Bool.of(((BoolNode) node).value);
+    if (node instanceof NilNode) return Value.Nil.VALUE;
+    return null;
+  }
+  
+  private static AST literal(Value value, AST original) {
+    if (value instanceof Value.String) return at(new StringNode((Value.String) value), original.position());
+    if (value instanceof Value.Number) return at(new NumberNode((Value.Number) value), original.position());
+    if (value == Value.Bool.TRUE) return BoolNode.TRUE;
+    if (value == Value.Bool.FALSE) return BoolNode.FALSE;
+    if (value == Value.Nil.VALUE) return NilNode.VALUE;
+    return original;
+  }
+  
+  private static boolean smallRepeat(Value left, Value right) {
+    Value string = left instanceof Value.String ? left : right, count = string == left ? right : left;
+    if (!(string instanceof Value.String) || !(count instanceof Value.Number)) return true;
+    return ((Value.String) string).length() * Math.max(((Value.Number) count).value, 0) <= MAX_STRING;
+  }
+  
+  private static boolean declares(AST node) {
+    var finder = new ASTRewriter() {
+      private boolean found = false;
+      
+      @Override
+      public AST visit(AST node) {
+        return found ? node : super.visit(node);
+      }
+      
+      @Override
+      public AST visitDef(DefNode node) {
+        found = true;
+        return node;
+      }
+      
+      @Override
+      public AST visitFunc(FuncNode node) {
+        return node;
+      }
+      
+      @Override
+      public AST visitField(FieldNode node) {
+        return node;
+      }
+    };
+    finder.visit(node);
+    return finder.found;
+  }
+  
+}
\ No newline at end of file
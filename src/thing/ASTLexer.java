@@ -0,0 +1,265 @@
+package thing;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.HashMap;
+
+class ASTLexer {
+  
+  private static final Map<String, Type> KEYWORDS = new HashMap<>();
+  
+  static {
+    for (var type : Type.values()) if (type.keyword != null) KEYWORDS.put(type.keyword, type);
+  }
+  
+  private final Reader in;
+  private final char[] buffer = new char[4096];
+  private int position = 0, limit = 0, line = 1, column = 0;
+  private boolean eof = false;
+  private SyntaxException error = null;
+  
+  public ASTLexer(Reader in) {
+    this.in = in;
+  }
+  
+  public Token next() {
+    if (error != null) throw error;
+    try {
+      return token();
+    } catch (SyntaxException e) {
+      throw error = e;
+    }
+  }
+  
+  private Token token() {
+    skipIgnored();
+    int line = this.line, column = this.column;
+    var c = peek(0);
+    if (c < 0) return new Token(Type.EOF, "<EOF>", line, column);
+    if (isIdStart(c)) {
+      var text = new StringBuilder();
+      while (isIdPart(peek(0))) text.append(advance());
+      var id = text.toString();
+      var keyword = KEYWORDS.get(id);
+      return new Token(keyword == null ? Type.ID : keyword, id, line, column);
+    }
+    if (isDigit(c)) return new Token(Type.NUMBER, number(), line, column);
+    if (c == '"' || c == '`') return new Token(Type.STRING, string(line, column), line, column);
+    var type = operator();
+    if (type == null) throw new SyntaxException(line, column, "token recognition error at: '" + (char) c + '\'');
+    return new Token(type, type.keyword, line, column);
+  }
+  
+  private void skipIgnored() {
+    while (true) {
+      var c = peek(0);
+      if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+        advance();
+      } else if (c == '/' && peek(1) == '*') {
+        int line = this.line, column = this.column;
+        advance();
+        advance();
+        while (!(peek(0) == '*' && peek(1) == '/')) {
+          if (peek(0) < 0) throw new SyntaxException(line, column, "unterminated comment");
+          if (advance() == '*') advance();
+        }
+        advance();
+        advance();
+      } else if (c == '/' && peek(1) == '/') {
+        while (peek(0) >= 0 && peek(0) != '\r' && peek(0) != '\n') {
+          if (advance() != '\\') continue;
+          if (peek(0) == '\r' && peek(1) == '\n') advance();
+          if (peek(0) >= 0) advance();
+        }
+      } else {
+        return;
+      }
+    }
+  }
+  
+  private String number() {
+    var text = new StringBuilder();
+    var radix = peek(1);
+    if (peek(0) == '0' && "dxob".indexOf(radix) > -1 && radix >= 0 && (isDigit(peek(2), radix) || peek(2) == '_' && isDigit(peek(3), radix))) {
+      text.append(advance()).append(advance());
+      while (isDigit(peek(0), radix) || peek(0) == '_' && isDigit(peek(1), radix)) {
+        if (peek(0) == '_') text.append(advance());
+        text.append(advance());
+      }
+      return text.toString();
+    }
+    digits(text);
+    if (peek(0) == '.' && isDigit(peek(1))) {
+      text.append(advance());
+      digits(text);
+    }
+    return text.toString();
+  }
+  
+  private void digits(StringBuilder text) {
+    text.append(advance());
+    while (isDigit(peek(0)) || peek(0) == '_' && isDigit(peek(1))) {
+      if (peek(0) == '_') text.append(advance());
+      text.append(advance());
+    }
+  }
+  
+  private String string(int line, int column) {
+    var text = new StringBuilder();
+    var quote = advance();
+    text.append(quote);
+    while (peek(0) != quote) {
+      if (peek(0) < 0) throw new SyntaxException(line, column, "unterminated string");
+      var c = advance();
+      text.append(c);
+      if (c != '\\') continue;
+      if (peek(0) < 0) throw new SyntaxException(line, column, "unterminated string");
+      if (peek(0) == '\r' && peek(1) == '\n') text.append(advance());
+      text.append(advance());
+    }
+    return text.append(advance()).toString();
+  }
+  
+  private Type operator() {
+    var c = advance();
+    switch (c) {
+      case '=': return match('=') ? match('=') ? Type.SAME : Type.EQ : Type.ASSIGN;
+      case '!': return match('=') ? match('=') ? Type.NSAME : Type.NEQ : match('!') ? Type.NOTNOT : Type.NOT;
+      case '<': return match('=') ? Type.LTE : Type.LT;
+      case '>': return match('=') ? Type.GTE : Type.GT;
+      case '+': return match('+') ? Type.ADDADD : Type.ADD;
+      case '-': return match('-') ? Type.SUBSUB : Type.SUB;
+      case '*': return Type.MUL;
+      case '/': return Type.DIV;
+      case '%': return Type.MOD;
+      case '.': return match('.') ? match('.') ? Type.ELLIPSIS : Type.RANGE : Type.DOT;
+      case '|': return Type.ABS;
+      case ';': return Type.SEMI;
+      case '^': return Type.META;
+      case '\'': return Type.QUOT;
+      case ':': return Type.COLON;
+      case ',': return Type.COMMA;
+      case '?': return Type.QMARK;
+      case '(': return Type.LPAREN;
+      case ')': return Type.RPAREN;
+      case '[': return Type.LBRACK;
+      case ']': return Type.RBRACK;
+      case '{': return Type.LBRACE;
+      case '}': return Type.RBRACE;
+    }
+    return null;
+  }
+  
+  private boolean match(char c) {
+    if (peek(0) != c) return false;
+    advance();
+    return true;
+  }
+  
+  private int peek(int offset) {
+    if (position + offset >= limit) fill(offset + 1);
+    return position + offset < limit ? buffer[position + offset] : -1;
+  }
+  
+  private char advance() {
+    peek(0);
+    var c = buffer[position++];
+    if (c == '\n') {
+      line++;
+      column = 0;
+    } else {
+      column++;
+    }
+    return c;
+  }
+  
+  private void fill(int needed) {
+    if (eof) return;
+    System.arraycopy(buffer, position, buffer, 0, limit - position);
+    limit -= position;
+    position = 0;
+    try {
+      while (limit < needed) {
+        var read = in.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+          eof = true;
+          return;
+        }
+        limit += read;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+  
+  private static boolean isIdStart(int c) {
+    return c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c == '_' || c == '$';
+  }
+  
+  private static boolean isIdPart(int c) {
+    return isIdStart(c) || isDigit(c);
+  }
+  
+  private static boolean isDigit(int c) {
+    return c >= '0' && c <= '9';
+  }
+  
+  private static boolean isDigit(int c, int radix) {
+    switch (radix) {
+      case 'x': return isDigit(c) || c >= 'A' && c <= 'F' || c >= 'a' && c <= 'f';
+      case 'o': return c >= '0' && c <= '7';
+      case 'b': return c == '0' || c == '1';
+    }
+    return isDigit(c);
+  }
+  
+  public static final class Token {
+    
+    public final Type type;
+    public final String text;
+    public final int line, column;
+    
+    public Token(Type type, String text, int line, int column) {
+      this.type = type;
+      this.text = text;
+      this.line = line;
+      this.column = column;
+    }
+    
+  }
+  
+  public enum Type {
+    
+    VAR("var"), LET("let"), FUNC("func"),
+    IF("if"), THEN("then"), ELSE("else"), WHILE("while"), DO("do"), ON("on"), FOR("for"), IN("in"), TRY("try"), CATCH("catch"), WITH("with"), FINALLY("finally"),
+    RETURN("return"), THROW("throw"), BREAK("break"), CONTINUE("continue"), AND("and"), OR("or"), TYPEOF("typeof"), THIS("this"),
+    TRUE("true"), FALSE("false"), NIL("nil"),
+    ASSIGN("="), EQ("=="), NEQ("!="), SAME("==="), NSAME("!=="), LT("<"), LTE("<="), GT(">"), GTE(">="),
+    ADD("+"), SUB("-"), MUL("*"), DIV("/"), MOD("%"), NOT("!"), ADDADD("++"), SUBSUB("--"), NOTNOT("!!"),
+    DOT("."), ABS("|"), SEMI(";"), META("^"), QUOT("'"), COLON(":"), COMMA(","), QMARK("?"), RANGE(".."), ELLIPSIS("..."),
+    LPAREN("("), RPAREN(")"), LBRACK("["), RBRACK("]"), LBRACE("{"), RBRACE("}"),
+    STRING(null), NUMBER(null), ID(null), EOF(null);
+    
+    public final String keyword;
+    
+    private Type(String keyword) {
+      this.keyword = keyword;
+    }
+    
+  }
+  
+  public static final class SyntaxException extends RuntimeException {
+    
+    public final int line, column;
+    
+    public SyntaxException(int line, int column, String message) {
+      super("line " + line + ':' + column + ' ' + message, null, false, false);
+      this.line = line;
+      this.column = column;
+    }
+    
+  }
+  
+}
\ No newline at end of file
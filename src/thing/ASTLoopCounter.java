@@ -0,0 +1,120 @@
+package thing;
+
+import static thing.AST.*;
+
+// `for var i = a; i < n; i++` (or `--`, `+=`/`-=` a constant) over a variable the body never
+// assigns, and `for x in a..b`, count on a primitive without building the range or boxing unread values
+class ASTLoopCounter extends ASTRewriter {
+  
+  @Override
+  public AST visitLoop(LoopNode node) {
+    var rewritten = super.visitLoop(node);
+    if (!(rewritten instanceof LoopNode)) return rewritten;
+    var loop = (LoopNode) rewritten;
+    var counter = counter(loop);
+    if (counter == null || writes(loop.loop, counter) || writes(loop.combinator, counter)) return loop;
+    var observed = mentions(loop.loop, counter) || mentions(loop.combinator, counter);
+    return copy(new LoopNode(loop.init, loop.condition, loop.loopEnd, loop.loop, loop.noLoop, loop.combinator, true, observed), loop);
+  }
+  
+  @Override
+  public AST visitIterator(IteratorNode node) {
+    var rewritten = super.visitIterator(node);
+    if (!(rewritten instanceof IteratorNode)) return rewritten;
+    var iterator = (IteratorNode) rewritten;
+    if (!(iterator.iterable instanceof BinOpNode)) return iterator;
+    var range = (BinOpNode) iterator.iterable;
+    if (range.assign || range.op != Value.BinOpFunc.RANGE) return iterator;
+    var observed = iterator.name != null && mentions(iterator.loop, iterator.name);
+    return copy(new IteratorNode(iterator.name, iterator.iterable, iterator.loop, iterator.noLoop, iterator.combinator, true, observed), iterator);
+  }
+  
+  public static double step(AST loopEnd) {
+    if (loopEnd instanceof ModOpNode) return ((ModOpNode) loopEnd).op == Value.UnOpFunc.INC ? 1 : -1;
+    var step = (BinOpNode) loopEnd;
+    var by = ((NumberNode) step.right).value.value;
+    return step.op == Value.BinOpFunc.ADD ? by : -by;
+  }
+  
+  public static boolean compare(Value.BinOpFunc op, double left, double right) {
+    if (op == Value.BinOpFunc.LT) return left < right;
+    if (op == Value.BinOpFunc.GT) return left > right;
+    if (op == Value.BinOpFunc.LTE) return !(left > right);
+    return !(left < right);
+  }
+  
+  private static String counter(LoopNode loop) {
+    if (!(loop.init instanceof DefNode) || !(loop.condition instanceof BinOpNode)) return null;
+    var init = (DefNode) loop.init;
+    if (!init.mutable || !(init.def instanceof VarNode)) return null;
+    var counter = ((VarNode) init.def).name;
+    var condition = (BinOpNode) loop.condition;
+    if (condition.assign || !named(condition.left, counter)) return null;
+    if (condition.op != Value.BinOpFunc.LT && condition.op != Value.BinOpFunc.GT && condition.op != Value.BinOpFunc.LTE && condition.op != Value.BinOpFunc.GTE) return null;
+    if (!(condition.right instanceof NumberNode) && !(condition.right instanceof VarNode && !named(condition.right, counter))) return null;
+    if (loop.loopEnd instanceof ModOpNode) {
+      var step = (ModOpNode) loop.loopEnd;
+      return named(step.operand, counter) && (step.op == Value.UnOpFunc.INC || step.op == Value.UnOpFunc.DEC) ? counter : null;
+    }
+    if (loop.loopEnd instanceof BinOpNode) {
+      var step = (BinOpNode) loop.loopEnd;
+      return step.assign && named(step.left, counter) && step.right instanceof NumberNode && (step.op == Value.BinOpFunc.ADD || step.op == Value.BinOpFunc.SUB) ? counter : null;
+    }
+    return null;
+  }
+  
+  private static boolean named(AST node, String name) {
+    return node instanceof VarNode && ((VarNode) node).name.equals(name);
+  }
+  
+  private static boolean writes(AST node, String name) {
+    var finder = new ASTRewriter() {
+      private boolean found = false;
+      
+      @Override
+      public AST visit(AST node) {
+        return found ? node : super.visit(node);
+      }
+      
+      @Override
+      public AST visitDef(DefNode node) {
+        if (named(node.def, name)) found = true;
+        return super.visitDef(node);
+      }
+      
+      @Override
+      public AST visitBinOp(BinOpNode node) {
+        if (node.assign && named(node.left, name)) found = true;
+        return super.visitBinOp(node);
+      }
+      
+      @Override
+      public AST visitModOp(ModOpNode node) {
+        if (named(node.operand, name)) found = true;
+        return super.visitModOp(node);
+      }
+    };
+    finder.visit(node);
+    return finder.found;
+  }
+  
+  private static boolean mentions(AST node, String name) {
+    var finder = new ASTRewriter() {
+      private boolean found = false;
+      
+      @Override
+      public AST visit(AST node) {
+        return found ? node : super.visit(node);
+      }
+      
+      @Override
+      public AST visitVar(VarNode node) {
+        if (node.name.equals(name)) found = true;
+        return node;
+      }
+    };
+    finder.visit(node);
+    return finder.found;
+  }
+  
+}
\ No newline at end of file
@@ -0,0 +1,49 @@
+package thing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class ASTOptimizer {
+  
+  public static final int MAX_LEVEL = 1;
+  
+  private final List<ASTVisitor<AST>> passes = new ArrayList<>();
+  private final int level;
+  private final boolean counting;
+  private int before = 0, after = 0;
+  
+  public ASTOptimizer(int level, boolean counting) {
+    this.level = level;
+    this.counting = counting;
+    if (level >= 1) {
+      passes.add(new ASTFolder());
+      passes.add(new ASTLoopCounter());
+    }
+  }
+  
+  public AST optimize(AST node) {
+    if (counting) before += size(node);
+    for (var pass : passes) node = pass.visit(node);
+    if (counting) after += size(node);
+    return node;
+  }
+  
+  public String report() {
+    return "-O" + level + " eliminated " + (before - after) + " of " + before + " AST nodes";
+  }
+  
+  public static int size(AST node) {
+    var counter = new ASTRewriter() {
+      private int size = 0;
+      
+      @Override
+      public AST visit(AST node) {
+        if (node != null) size++;
+        return super.visit(node);
+      }
+    };
+    counter.visit(node);
+    return counter.size;
+  }
+  
+}
\ No newline at end of file
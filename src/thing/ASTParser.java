@@ -0,0 +1,535 @@
+package thing;
+
+import java.io.Reader;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.function.Supplier;
+
+import thing.ASTLexer.SyntaxException;
+import thing.ASTLexer.Token;
+import thing.ASTLexer.Type;
+
+import static thing.AST.*;
+
+class ASTParser {
+  
+  private static final Map<Type, Value.BinOpFunc> BIN_OPS = Map.ofEntries(
+    Map.entry(Type.ADD, Value.BinOpFunc.ADD), Map.entry(Type.SUB, Value.BinOpFunc.SUB), Map.entry(Type.MUL, Value.BinOpFunc.MUL), Map.entry(Type.DIV, Value.BinOpFunc.DIV), Map.entry(Type.MOD, Value.BinOpFunc.MOD),
+    Map.entry(Type.EQ, Value.BinOpFunc.EQ), Map.entry(Type.NEQ, Value.BinOpFunc.NEQ), Map.entry(Type.SAME, Value.BinOpFunc.SAME), Map.entry(Type.NSAME, Value.BinOpFunc.NSAME),
+    Map.entry(Type.LT, Value.BinOpFunc.LT), Map.entry(Type.LTE, Value.BinOpFunc.LTE), Map.entry(Type.GT, Value.BinOpFunc.GT), Map.entry(Type.GTE, Value.BinOpFunc.GTE),
+    Map.entry(Type.AND, Value.BinOpFunc.AND), Map.entry(Type.OR, Value.BinOpFunc.OR), Map.entry(Type.RANGE, Value.BinOpFunc.RANGE)
+  );
+  private static final Map<Type, Value.UnOpFunc> UN_OPS = Map.of(Type.ADD, Value.UnOpFunc.POS, Type.SUB, Value.UnOpFunc.NEG, Type.NOT, Value.UnOpFunc.NOT);
+  private static final Map<Type, Value.UnOpFunc> MOD_OPS = Map.of(Type.ADDADD, Value.UnOpFunc.INC, Type.SUBSUB, Value.UnOpFunc.DEC, Type.NOTNOT, Value.UnOpFunc.NOT);
+  
+  private static final DefNode[] NO_DEFS = {};
+  private static final FieldNode[] NO_FIELDS = {};
+  private static final AST[] NO_ARGS = {};
+  
+  private final ASTLexer lexer;
+  private final Names names;
+  private final List<Token> tokens = new ArrayList<>();
+  private final Set<Integer> exits = new HashSet<>();
+  private List<Integer> calls = null;
+  private int position = 0;
+  
+  public ASTParser(Reader in, Names names) {
+    lexer = new ASTLexer(in);
+    this.names = names;
+  }
+  
+  public ASTParser(Reader in) {
+    this(in, new Names());
+  }
+  
+  public DefsNode file() {
+    var defs = new ArrayList<DefNode>();
+    while (peek(0).type != Type.EOF) def(defs);
+    return new DefsNode(defs.toArray(NO_DEFS));
+  }
+  
+  public DefsNode nextDef() {
+    if (peek(0).type == Type.EOF) return null;
+    var defs = new ArrayList<DefNode>();
+    def(defs);
+    tokens.subList(0, position).clear();
+    position = 0;
+    return new DefsNode(defs.toArray(NO_DEFS));
+  }
+  
+  private void def(List<DefNode> defs) {
+    switch (peek(0).type) {
+      case VAR: case LET:
+        for (var def : varDef().defs) defs.add(def);
+        break;
+      case FUNC:
+        defs.add(funcDef());
+        break;
+      case DO: {
+        var start = next();
+        defs.add(at(new DefNode(null, expr(), false), start));
+        break;
+      }
+      default: throw mismatched(peek(0), "{'var', 'let', 'func', 'do', <EOF>}");
+    }
+    expect(Type.DOT);
+  }
+  
+  private DefsNode varDef() {
+    var start = next();
+    var mutable = start.type == Type.VAR;
+    var defs = new ArrayList<DefNode>();
+    do {
+      var token = peek(0);
+      var def = factor();
+      defs.add(at(new DefNode(def, match(Type.ASSIGN) ? noSpliceExpr() : null, mutable), token));
+    } while (peek(0).type == Type.COMMA && startsFactor(peek(1).type) && match(Type.COMMA));
+    return at(new DefsNode(defs.toArray(NO_DEFS)), start);
+  }
+  
+  private DefNode funcDef() {
+    return (DefNode) function(expect(Type.FUNC), true, this::expr);
+  }
+  
+  private ParamsNode params() {
+    var start = expect(Type.LPAREN);
+    var params = new ArrayList<DefNode>();
+    String varargs = null;
+    if (!match(Type.RPAREN)) {
+      do {
+        var token = expect(Type.ID);
+        var name = names.intern(token.text);
+        if (match(Type.ELLIPSIS)) {
+          varargs = name;
+          break;
+        }
+        params.add(at(new DefNode(at(new VarNode(name), token), match(Type.ASSIGN) ? noSpliceExpr() : match(Type.QMARK) ? NilNode.VALUE : null, true), token));
+      } while (match(Type.COMMA));
+      expect(Type.RPAREN);
+    }
+    return at(new ParamsNode(params.toArray(NO_DEFS), varargs), start);
+  }
+  
+  private AST expr() {
+    var value = noSpliceExpr();
+    var token = peek(0);
+    return match(Type.SEMI) ? at(new BinOpNode(value, expr(), Value.BinOpFunc.SEQUENCE), token) : value;
+  }
+  
+  private AST noSpliceExpr() {
+    var start = peek(0);
+    switch (start.type) {
+      case IF: {
+        next();
+        var condition = noSpliceExpr();
+        expect(Type.THEN);
+        var tBranch = noSpliceExpr();
+        return at(new BranchNode(condition, tBranch, match(Type.ELSE) ? noSpliceExpr() : null), start);
+      }
+      case WHILE: {
+        next();
+        var condition = noSpliceExpr();
+        expect(Type.DO);
+        var body = loopBody();
+        return at(new LoopNode(null, condition, null, body[0], body[1], body[2]), start);
+      }
+      case FOR: {
+        next();
+        if (peek(0).type == Type.ID && peek(1).type == Type.IN) {
+          var name = names.intern(next().text);
+          next();
+          var iterable = noSpliceExpr();
+          expect(Type.DO);
+          var body = loopBody();
+          return at(new IteratorNode(name, iterable, body[0], body[1], body[2]), start);
+        }
+        var init = peek(0).type == Type.SEMI ? null : noSpliceExpr();
+        if (init != null && match(Type.DO)) {
+          var body = loopBody();
+          return at(new IteratorNode(null, init, body[0], body[1], body[2]), start);
+        }
+        expect(Type.SEMI);
+        var condition = peek(0).type == Type.SEMI ? BoolNode.TRUE : noSpliceExpr();
+        expect(Type.SEMI);
+        var loopEnd = peek(0).type == Type.DO ? null : noSpliceExpr();
+        expect(Type.DO);
+        var body = loopBody();
+        return at(new LoopNode(init, condition, loopEnd, body[0], body[1], body[2]), start);
+      }
+      case TRY: {
+        next();
+        var throwing = noSpliceExpr();
+        AST handler = null;
+        String name = null;
+        if (match(Type.CATCH)) {
+          if (peek(0).type == Type.ID && peek(1).type == Type.WITH) {
+            name = names.intern(next().text);
+            next();
+          }
+          handler = noSpliceExpr();
+        }
+        return at(new ExceptionNode(throwing, handler, match(Type.FINALLY) ? noSpliceExpr() : null, name), start);
+      }
+      case WITH: {
+        next();
+        var implicit = noSpliceExpr();
+        expect(Type.DO);
+        return at(new ScopeNode(implicit, noSpliceExpr()), start);
+      }
+    }
+    var value = unOpExpr();
+    var binOp = binOp();
+    return binOp == null ? value : binOp.withOperands(value, noSpliceExpr());
+  }
+  
+  private AST[] loopBody() {
+    AST loop, combinator = null;
+    var type = peek(0).type;
+    if ((BIN_OPS.containsKey(type) || type == Type.ASSIGN) && (peek(1).type == Type.ON || peek(1).type == Type.ASSIGN && peek(2).type == Type.ON && isArithmetic(type))) {
+      var binOp = binOp();
+      expect(Type.ON);
+      final VarNode leftVar = new VarNode("l"), rightVar = new VarNode("r");
+      combinator = new FuncNode(new ParamsNode(new DefNode[] {new DefNode(leftVar, null, true), new DefNode(rightVar, null, true)}, null), binOp.withOperands(leftVar, rightVar));
+      loop = noSpliceExpr();
+    } else {
+      loop = noSpliceExpr();
+      if (match(Type.ON)) {
+        combinator = loop;
+        loop = noSpliceExpr();
+      }
+    }
+    return new AST[] {loop, match(Type.ELSE) ? noSpliceExpr() : null, combinator};
+  }
+  
+  private BinOpNode binOp() {
+    var token = peek(0);
+    if (token.type == Type.ASSIGN) return at(new BinOpNode(null, null, null, true), next());
+    var op = BIN_OPS.get(token.type);
+    if (op == null) return null;
+    next();
+    return at(new BinOpNode(null, null, op, isArithmetic(token.type) && match(Type.ASSIGN)), token);
+  }
+  
+  private AST unOpExpr() {
+    if (peek(0).type == Type.ABS) {
+      var start = next();
+      var abs = expr();
+      expect(Type.ABS);
+      return at(new UnOpNode(abs, Value.UnOpFunc.ABS), start);
+    }
+    var unOps = new ArrayList<Token>();
+    while (UN_OPS.containsKey(peek(0).type)) unOps.add(next());
+    var value = modOpExpr();
+    if (unOps.isEmpty() && peek(0).type == Type.ELLIPSIS) return at(new UnOpNode(value, Value.UnOpFunc.SPREAD), next());
+    for (var unOp : unOps) value = at(new UnOpNode(value, UN_OPS.get(unOp.type)), unOp);
+    return value;
+  }
+  
+  private AST modOpExpr() {
+    var pre = MOD_OPS.get(peek(0).type);
+    if (pre != null) {
+      var token = next();
+      return at(new ModOpNode(factor(), pre, false), token);
+    }
+    var value = factor();
+    var post = MOD_OPS.get(peek(0).type);
+    if (post == null) return value;
+    return at(new ModOpNode(value, post, true), next());
+  }
+  
+  private AST factor() {
+    var recording = calls;
+    calls = null;
+    try {
+      return postfix(primary(), recording);
+    } finally {
+      calls = recording;
+    }
+  }
+  
+  private AST postfix(AST value, List<Integer> calls) {
+    while (true) {
+      var token = peek(0);
+      switch (token.type) {
+        case LPAREN:
+          if (exits.contains(position)) return value;
+          if (calls != null) calls.add(position);
+          value = at(new CallNode(value, args()), token);
+          break;
+        case NUMBER: case STRING: case TRUE: case FALSE: case NIL:
+          value = at(new CallNode(value, new AST[] {simpleLit()}), token);
+          break;
+        case QMARK: case LBRACK: case QUOT: {
+          if (token.type == Type.QMARK && peek(1).type != Type.LBRACK && peek(1).type != Type.QUOT) return value;
+          var optional = match(Type.QMARK);
+          AST member;
+          if (match(Type.LBRACK)) {
+            member = expr();
+            expect(Type.RBRACK);
+          } else {
+            expect(Type.QUOT);
+            member = peek(0).type == Type.ID ? name(next()) : simpleLit();
+          }
+          value = at(new MemberNode(value, member, optional), token);
+          break;
+        }
+        case META: {
+          next();
+          if (peek(0).type != Type.LBRACK && peek(0).type != Type.LBRACE) throw mismatched(peek(0), "{'[', '{'}");
+          var obj = peek(0).type == Type.LBRACK ? brackLit() : braceLit();
+          value = at(new ObjNode(value, obj.fields), token);
+          break;
+        }
+        default: return value;
+      }
+    }
+  }
+  
+  private AST[] args() {
+    expect(Type.LPAREN);
+    var args = new ArrayList<AST>();
+    if (!match(Type.RPAREN)) {
+      do args.add(expr());
+      while (match(Type.COMMA));
+      expect(Type.RPAREN);
+    }
+    return args.toArray(NO_ARGS);
+  }
+  
+  private AST primary() {
+    var token = peek(0);
+    switch (token.type) {
+      case LPAREN: {
+        next();
+        var value = expr();
+        expect(Type.RPAREN);
+        return value;
+      }
+      case RETURN: return jump(JumpNode.Type.RETURN);
+      case THROW: return jump(JumpNode.Type.THROW);
+      case BREAK: return jump(JumpNode.Type.BREAK);
+      case CONTINUE: return jump(JumpNode.Type.CONTINUE);
+      case TYPEOF:
+        next();
+        return at(new TypeNode(primary()), token);
+      case FUNC: return function(next(), false, this::noSpliceExpr);
+      case LBRACK: return brackLit();
+      case LBRACE: return braceLit();
+      case NUMBER: case STRING: case TRUE: case FALSE: case NIL: return simpleLit();
+      case VAR: case LET: return varDef();
+      case THIS: return at(new VarNode(Value.Function.THIS), next());
+      case ID: return at(new VarNode(names.intern(token.text)), next());
+    }
+    throw new SyntaxException(token.line, token.column, "no viable alternative at input '" + token.text + '\'');
+  }
+  
+  private JumpNode jump(JumpNode.Type type) {
+    var token = next();
+    return at(new JumpNode(type, startsExpr(peek(0).type) ? noSpliceExpr() : null), token);
+  }
+  
+  private AST function(Token start, boolean named, Supplier<AST> body) {
+    var mark = position;
+    var outer = calls;
+    var added = new ArrayList<Integer>();
+    SyntaxException error = null;
+    try {
+      while (named || startsFactor(peek(0).type)) {
+        var attempt = calls = new ArrayList<>();
+        try {
+          var def = factor();
+          calls = outer;
+          var params = params();
+          return at(new DefNode(def, at(new FuncNode(params, body.get()), start), false), start);
+        } catch (SyntaxException e) {
+          calls = outer;
+          position = mark;
+          error = furthest(error, e);
+          if (attempt.isEmpty()) break;
+          var exit = attempt.get(attempt.size() - 1);
+          exits.add(exit);
+          added.add(exit);
+        }
+      }
+      if (named || error != null && peek(0).type != Type.LPAREN) throw error;
+      exits.removeAll(added);
+      added.clear();
+      try {
+        var params = params();
+        return at(new FuncNode(params, body.get()), start);
+      } catch (SyntaxException e) {
+        throw furthest(error, e);
+      }
+    } finally {
+      calls = outer;
+      exits.removeAll(added);
+    }
+  }
+  
+  private ObjNode brackLit() {
+    var start = expect(Type.LBRACK);
+    var fields = new ArrayList<FieldNode>();
+    if (!match(Type.RBRACK)) {
+      var token = peek(0);
+      var first = expr();
+      if (match(Type.COLON)) {
+        fields.add(at(new FieldNode(first, expr(), true), token));
+        while (match(Type.COMMA)) {
+          token = peek(0);
+          var key = expr();
+          expect(Type.COLON);
+          fields.add(at(new FieldNode(key, expr(), true), token));
+        }
+      } else {
+        var i = 0;
+        fields.add(at(new FieldNode(new NumberNode(i++), first, true), token));
+        while (match(Type.COMMA)) {
+          token = peek(0);
+          fields.add(at(new FieldNode(new NumberNode(i++), expr(), true), token));
+        }
+      }
+      expect(Type.RBRACK);
+    }
+    return at(new ObjNode(null, fields.toArray(NO_FIELDS)), start);
+  }
+  
+  private ObjNode braceLit() {
+    var start = expect(Type.LBRACE);
+    var fields = new ArrayList<FieldNode>();
+    switch (peek(0).type) {
+      case VAR: case LET: case FUNC: case DO: case RBRACE:
+        while (!match(Type.RBRACE)) {
+          objDef(fields);
+          expect(Type.DOT);
+        }
+        break;
+      default:
+        do {
+          var token = peek(0);
+          var key = objId();
+          expect(Type.COLON);
+          fields.add(at(new FieldNode(key, expr(), true), token));
+        } while (match(Type.COMMA));
+        expect(Type.RBRACE);
+    }
+    return at(new ObjNode(null, fields.toArray(NO_FIELDS)), start);
+  }
+  
+  private void objDef(List<FieldNode> fields) {
+    var token = next();
+    switch (token.type) {
+      case VAR: case LET: {
+        var mutable = token.type == Type.VAR;
+        do {
+          var start = peek(0);
+          var key = objId();
+          fields.add(at(new FieldNode(key, match(Type.ASSIGN) ? noSpliceExpr() : NilNode.VALUE, mutable), start));
+        } while (match(Type.COMMA));
+        return;
+      }
+      case FUNC: {
+        var key = objId();
+        var params = params();
+        fields.add(at(new FieldNode(key, at(new FuncNode(params, expr()), token), false), token));
+        return;
+      }
+      case DO:
+        fields.add(at(new FieldNode(null, expr(), false), token));
+        return;
+    }
+    throw mismatched(token, "{'var', 'let', 'func', 'do', '}'}");
+  }
+  
+  private AST objId() {
+    switch (peek(0).type) {
+      case ID: return name(next());
+      case LBRACK: {
+        next();
+        var value = expr();
+        expect(Type.RBRACK);
+        return value;
+      }
+    }
+    return simpleLit();
+  }
+  
+  private AST simpleLit() {
+    var token = next();
+    switch (token.type) {
+      case STRING: try {
+        return at(StringNode.of(token.text), token);
+      } catch (LiteralException e) {
+        throw new SyntaxException(token.line, token.column, e.getMessage());
+      }
+      case NUMBER: return at(NumberNode.of(token.text), token);
+      case TRUE: return BoolNode.TRUE;
+      case FALSE: return BoolNode.FALSE;
+      case NIL: return NilNode.VALUE;
+    }
+    throw mismatched(token, "{NUMBER, STRING, 'true', 'false', 'nil'}");
+  }
+  
+  private StringNode name(Token token) {
+    return at(new StringNode(names.intern(token.text)), token);
+  }
+  
+  private static <N extends AST> N at(N node, Token token) {
+    return AST.at(node, token.line, token.column);
+  }
+  
+  private static boolean isArithmetic(Type type) {
+    return type == Type.ADD || type == Type.SUB || type == Type.MUL || type == Type.DIV || type == Type.MOD;
+  }
+  
+  private static boolean startsFactor(Type type) {
+    switch (type) {
+      case LPAREN: case RETURN: case THROW: case BREAK: case CONTINUE: case TYPEOF: case FUNC: case LBRACK: case LBRACE:
+      case NUMBER: case STRING: case TRUE: case FALSE: case NIL: case VAR: case LET: case THIS: case ID:
+        return true;
+    }
+    return false;
+  }
+  
+  private static boolean startsExpr(Type type) {
+    switch (type) {
+      case IF: case WHILE: case FOR: case TRY: case WITH: case ABS:
+        return true;
+    }
+    return UN_OPS.containsKey(type) || MOD_OPS.containsKey(type) || startsFactor(type);
+  }
+  
+  private Token peek(int offset) {
+    while (position + offset >= tokens.size()) tokens.add(lexer.next());
+    return tokens.get(position + offset);
+  }
+  
+  private Token next() {
+    var token = peek(0);
+    if (token.type != Type.EOF) position++;
+    return token;
+  }
+  
+  private boolean match(Type type) {
+    if (peek(0).type != type) return false;
+    next();
+    return true;
+  }
+  
+  private Token expect(Type type) {
+    var token = peek(0);
+    if (token.type != type) throw mismatched(token, type.keyword == null ? type.name() : "'" + type.keyword + "'");
+    return next();
+  }
+  
+  private static SyntaxException furthest(SyntaxException a, SyntaxException b) {
+    return a == null || b.line > a.line || b.line == a.line && b.column > a.column ? b : a;
+  }
+  
+  private static SyntaxException mismatched(Token token, String expected) {
+    return new SyntaxException(token.line, token.column, "mismatched input '" + token.text + "' expecting " + expected);
+  }
+  
+}
\ No newline at end of file
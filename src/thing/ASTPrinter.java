@@ -1,26 +1,36 @@
 package thing;
 
+import java.io.PrintStream;
 import java.lang.reflect.Modifier;
+import java.util.Arrays;
 
-import static java.lang.System.out;
 import static thing.AST.*;
 
 class ASTPrinter {
   
+  private final PrintStream out;
   private int tab = 0;
   
+  public ASTPrinter(PrintStream out) {
+    this.out = out;
+  }
+  
+  public ASTPrinter() {
+    this(System.out);
+  }
+  
   public void visit(AST ast) {
     var type = ast.getClass();
-    out.println(type.getSimpleName());
+    out.println(ast.position() == 0 ? type.getSimpleName() : type.getSimpleName() + " @" + ast.line() + ':' + ast.column());
     tab++;
     var first = true;
     for (var field : type.getDeclaredFields()) try {
-      if (Modifier.isStatic(field.getModifiers())) continue;
       var fieldType = field.getType();
-      if (Iterable.class.isAssignableFrom(fieldType)) {
+      if (Modifier.isStatic(field.getModifiers()) || fieldType == Value.Object.Cache.class || fieldType == Value.Function.Cache.class) continue;
+      if (fieldType.isArray() && !fieldType.getComponentType().isPrimitive() && field.get(ast) != null) {
         var i = 0;
         var name = field.getName();
-        for (var value : (Iterable) field.get(ast)) {
+        for (var value : (Object[]) field.get(ast)) {
           first = false;
           printTab();
           out.print(name);
@@ -39,6 +49,7 @@ class ASTPrinter {
         var value = field.get(ast);
         if (value instanceof AST) visit((AST) value);
         else if (value instanceof String) out.println('"' + (String) value + '"');
+        else if (value instanceof int[]) out.println(Arrays.toString((int[]) value));
         else out.println(value);
       }
     } catch (IllegalAccessException e) {
@@ -0,0 +1,205 @@
+package thing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static thing.AST.*;
+
+// resolves every variable to the frame slots it can live in, innermost first; only top-level
+// definitions and members found through `with` are still looked up by name
+class ASTResolver extends ASTRewriter {
+  
+  private static final int[] GLOBAL = {};
+  
+  private final List<Frame> frames = new ArrayList<>();
+  private Frame frame = null, caught = null;
+  private int opened = 0;
+  private boolean eliding = false;
+  
+  private ASTResolver() {}
+  
+  public static AST resolve(AST node) {
+    var resolver = new ASTResolver();
+    resolver.visit(node);
+    resolver.opened = 0;
+    resolver.eliding = true;
+    return resolver.visit(node);
+  }
+  
+  private void open(boolean with) {
+    if (opened == frames.size()) frames.add(new Frame(with));
+    var opening = frames.get(opened++);
+    opening.parent = frame;
+    opening.elided = eliding && !opening.with && opening.slots.isEmpty();
+    frame = opening;
+  }
+  
+  private void close() {
+    frame = frame.parent;
+  }
+  
+  private AST scoped(AST node) {
+    if (node == null) return null;
+    open(false);
+    var resolved = visit(node);
+    close();
+    return resolved;
+  }
+  
+  private int[] declare(String name) {
+    var depth = 0;
+    var target = frame;
+    for (; target != null && target.with && target != caught; target = target.parent) depth++;
+    if (target == null) return GLOBAL;
+    var slot = target.slots.get(name);
+    if (slot == null) {
+      if (target.slots.size() == Scope.WITH) throw new DataException("too many variables in one scope");
+      target.slots.put(name, slot = target.slots.size());
+    }
+    target.declared++;
+    return new int[] {Scope.address(depth, slot)};
+  }
+  
+  private int[] reference(String name) {
+    var path = GLOBAL;
+    var depth = 0;
+    for (var scope = frame; scope != null; scope = scope.parent) {
+      if (scope.elided) continue;
+      if (scope.with) path = append(path, Scope.address(depth, Scope.WITH));
+      var slot = scope.slots.get(name);
+      if (slot != null) path = append(path, Scope.address(depth, slot));
+      depth++;
+    }
+    return path;
+  }
+  
+  private static int[] append(int[] path, int address) {
+    path = Arrays.copyOf(path, path.length + 1);
+    path[path.length - 1] = address;
+    return path;
+  }
+  
+  @Override
+  public AST visit(AST node) {
+    var target = frame;
+    while (target != null && target.with) target = target.parent;
+    var declared = target == null ? 0 : target.declared;
+    var resolved = super.visit(node);
+    if (target != null && target.declared != declared) AST.binding(resolved);
+    return resolved;
+  }
+  
+  @Override
+  public AST visitDef(DefNode node) {
+    if (node.def instanceof VarNode) {
+      var value = scoped(node.value);
+      var def = (VarNode) node.def;
+      return copy(new DefNode(copy(new VarNode(def.name, declare(def.name)), def), value, node.mutable), node);
+    }
+    if (node.def instanceof MemberNode) {
+      open(false);
+      AST def = visit(node.def), value = visit(node.value);
+      close();
+      return copy(new DefNode(def, value, node.mutable), node);
+    }
+    if (node.def == null) return copy(new DefNode(null, scoped(node.value), node.mutable), node);
+    return node;
+  }
+  
+  @Override
+  public AST visitBranch(BranchNode node) {
+    var condition = visit(node.condition);
+    return copy(new BranchNode(condition, scoped(node.tBranch), scoped(node.fBranch)), node);
+  }
+  
+  @Override
+  public AST visitLoop(LoopNode node) {
+    open(false);
+    AST combinator = visit(node.combinator), init = visit(node.init);
+    AST condition = scoped(node.condition), loop = scoped(node.loop), loopEnd = scoped(node.loopEnd), noLoop = scoped(node.noLoop);
+    close();
+    return copy(new LoopNode(init, condition, loopEnd, loop, noLoop, combinator, node.counted, node.observed), node);
+  }
+  
+  @Override
+  public AST visitIterator(IteratorNode node) {
+    open(false);
+    AST combinator = visit(node.combinator), iterable = visit(node.iterable);
+    open(false);
+    if (node.name != null) declare(node.name);
+    var loop = visit(node.loop);
+    close();
+    var noLoop = scoped(node.noLoop);
+    close();
+    return copy(new IteratorNode(node.name, iterable, loop, noLoop, combinator, node.counted, node.observed), node);
+  }
+  
+  @Override
+  public AST visitException(ExceptionNode node) {
+    var throwing = scoped(node.throwing);
+    var outer = caught;
+    caught = frame;
+    var name = node.name == null ? null : declare(node.name);
+    var handler = visit(node.handler);
+    caught = outer;
+    var brother = frame != null && (frame.with || !frame.elided);
+    return copy(new ExceptionNode(throwing, handler, scoped(node.always), node.name, name, brother), node);
+  }
+  
+  @Override
+  public AST visitScope(ScopeNode node) {
+    var implicit = visit(node.implicit);
+    open(true);
+    var value = visit(node.value);
+    close();
+    return copy(new ScopeNode(implicit, value), node);
+  }
+  
+  @Override
+  public AST visitVar(VarNode node) {
+    return copy(new VarNode(node.name, reference(node.name)), node);
+  }
+  
+  @Override
+  public AST visitFunc(FuncNode node) {
+    var params = new DefNode[node.params.params.length];
+    var defaults = new AST[params.length];
+    for (var i = 0; i < params.length; i++) defaults[i] = visit(node.params.params[i].value);
+    open(false);
+    declare(Value.Function.THIS);
+    for (var i = 0; i < params.length; i++) {
+      var param = node.params.params[i];
+      var def = param.def instanceof VarNode ? copy(new VarNode(((VarNode) param.def).name, declare(((VarNode) param.def).name)), param.def) : param.def;
+      params[i] = copy(new DefNode(def, defaults[i], param.mutable), param);
+    }
+    var varargs = node.params.varargs == null ? null : declare(node.params.varargs);
+    var body = visit(node.body);
+    close();
+    return copy(new FuncNode(copy(new ParamsNode(params, node.params.varargs, varargs), node.params), body), node);
+  }
+  
+  @Override
+  public AST visitField(FieldNode node) {
+    var key = scoped(node.key);
+    return copy(new FieldNode(key, scoped(node.value), node.mutable), node);
+  }
+  
+  private static final class Frame {
+    
+    public final boolean with;
+    public final Map<String, Integer> slots = new HashMap<>();
+    public Frame parent = null;
+    // blocks, loop bodies and conditions that define nothing of their own get no scope at runtime
+    public boolean elided = false;
+    public int declared = 0;
+    
+    public Frame(boolean with) {
+      this.with = with;
+    }
+    
+  }
+  
+}
\ No newline at end of file
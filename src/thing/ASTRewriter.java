@@ -0,0 +1,142 @@
+package thing;
+
+import static thing.AST.*;
+
+class ASTRewriter implements ASTVisitor<AST> {
+  
+  protected AST target(AST node) {
+    return visit(node);
+  }
+  
+  protected <N extends AST> N[] visitAll(N[] nodes) {
+    var rewritten = nodes;
+    for (var i = 0; i < nodes.length; i++) {
+      @SuppressWarnings("unchecked")
+      var node = (N) visit(nodes[i]);
+      if (node == nodes[i]) continue;
+      if (rewritten == nodes) rewritten = nodes.clone();
+      rewritten[i] = node;
+    }
+    return rewritten;
+  }
+  
+  protected static <N extends AST> N copy(N node, AST original) {
+    return at(node, original.position());
+  }
+  
+  public AST visitDefs(DefsNode node) {
+    var defs = visitAll(node.defs);
+    return defs == node.defs ? node : copy(new DefsNode(defs), node);
+  }
+  
+  public AST visitDef(DefNode node) {
+    AST def = target(node.def), value = visit(node.value);
+    return def == node.def && value == node.value ? node : copy(new DefNode(def, value, node.mutable), node);
+  }
+  
+  public AST visitParams(ParamsNode node) {
+    var params = visitAll(node.params);
+    return params == node.params ? node : copy(new ParamsNode(params, node.varargs, node.varargsPath), node);
+  }
+  
+  public AST visitBranch(BranchNode node) {
+    AST condition = visit(node.condition), tBranch = visit(node.tBranch), fBranch = visit(node.fBranch);
+    return condition == node.condition && tBranch == node.tBranch && fBranch == node.fBranch ? node : copy(new BranchNode(condition, tBranch, fBranch), node);
+  }
+  
+  public AST visitLoop(LoopNode node) {
+    AST init = visit(node.init), condition = visit(node.condition), loopEnd = visit(node.loopEnd), loop = visit(node.loop), noLoop = visit(node.noLoop), combinator = visit(node.combinator);
+    if (init == node.init && condition == node.condition && loopEnd == node.loopEnd && loop == node.loop && noLoop == node.noLoop && combinator == node.combinator) return node;
+    return copy(new LoopNode(init, condition, loopEnd, loop, noLoop, combinator, node.counted, node.observed), node);
+  }
+  
+  public AST visitIterator(IteratorNode node) {
+    AST iterable = visit(node.iterable), loop = visit(node.loop), noLoop = visit(node.noLoop), combinator = visit(node.combinator);
+    if (iterable == node.iterable && loop == node.loop && noLoop == node.noLoop && combinator == node.combinator) return node;
+    return copy(new IteratorNode(node.name, iterable, loop, noLoop, combinator, node.counted, node.observed), node);
+  }
+  
+  public AST visitException(ExceptionNode node) {
+    AST throwing = visit(node.throwing), handler = visit(node.handler), always = visit(node.always);
+    return throwing == node.throwing && handler == node.handler && always == node.always ? node : copy(new ExceptionNode(throwing, handler, always, node.name, node.namePath, node.brother), node);
+  }
+  
+  public AST visitScope(ScopeNode node) {
+    AST implicit = visit(node.implicit), value = visit(node.value);
+    return implicit == node.implicit && value == node.value ? node : copy(new ScopeNode(implicit, value), node);
+  }
+  
+  public AST visitBinOp(BinOpNode node) {
+    AST left = node.assign ? target(node.left) : visit(node.left), right = visit(node.right);
+    return left == node.left && right == node.right ? node : node.withOperands(left, right);
+  }
+  
+  public AST visitUnOp(UnOpNode node) {
+    var operand = visit(node.operand);
+    return operand == node.operand ? node : node.withOperand(operand);
+  }
+  
+  public AST visitModOp(ModOpNode node) {
+    var operand = target(node.operand);
+    return operand == node.operand ? node : node.withOperand(operand, node.after);
+  }
+  
+  public AST visitJump(JumpNode node) {
+    var operand = visit(node.operand);
+    return operand == node.operand ? node : copy(new JumpNode(node.type, operand), node);
+  }
+  
+  public AST visitType(TypeNode node) {
+    var operand = visit(node.operand);
+    return operand == node.operand ? node : copy(new TypeNode(operand), node);
+  }
+  
+  public AST visitCall(CallNode node) {
+    var callee = visit(node.callee);
+    var args = visitAll(node.args);
+    return callee == node.callee && args == node.args ? node : copy(new CallNode(callee, args), node);
+  }
+  
+  public AST visitMember(MemberNode node) {
+    AST object = visit(node.object), member = visit(node.member);
+    return object == node.object && member == node.member ? node : copy(new MemberNode(object, member, node.optional), node);
+  }
+  
+  public AST visitVar(VarNode node) {
+    return node;
+  }
+  
+  public AST visitFunc(FuncNode node) {
+    var params = (ParamsNode) visit(node.params);
+    var body = visit(node.body);
+    return params == node.params && body == node.body ? node : copy(new FuncNode(params, body), node);
+  }
+  
+  public AST visitObj(ObjNode node) {
+    var meta = visit(node.meta);
+    var fields = visitAll(node.fields);
+    return meta == node.meta && fields == node.fields ? node : copy(new ObjNode(meta, fields), node);
+  }
+  
+  public AST visitField(FieldNode node) {
+    AST key = visit(node.key), value = visit(node.value);
+    return key == node.key && value == node.value ? node : copy(new FieldNode(key, value, node.mutable), node);
+  }
+  
+  public AST visitString(StringNode node) {
+    return node;
+  }
+  
+  public AST visitNumber(NumberNode node) {
+    return node;
+  }
+  
+  public AST visitBool(BoolNode node) {
+    return node;
+  }
+  
+  public AST visitNil(NilNode node) {
+    return node;
+  }
+  
+}
\ No newline at end of file
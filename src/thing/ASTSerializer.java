@@ -0,0 +1,324 @@
+package thing;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import static thing.AST.*;
+
+class ASTSerializer implements ASTVisitor<Void> {
+  
+  private static final byte NULL = 0, DEFS = 1, DEF = 2, PARAMS = 3, BRANCH = 4, LOOP = 5, ITERATOR = 6, EXCEPTION = 7, SCOPE = 8, BIN_OP = 9, UN_OP = 10, MOD_OP = 11, JUMP = 12, TYPE = 13, CALL = 14, MEMBER = 15, VAR = 16, FUNC = 17, OBJ = 18, FIELD = 19, STRING = 20, NUMBER = 21, TRUE = 22, FALSE = 23, NIL = 24;
+  private static final List<Value.BinOpFunc> BIN_OPS = List.of(
+    Value.BinOpFunc.SEQUENCE, Value.BinOpFunc.ADD, Value.BinOpFunc.SUB, Value.BinOpFunc.MUL, Value.BinOpFunc.DIV, Value.BinOpFunc.MOD,
+    Value.BinOpFunc.EQ, Value.BinOpFunc.NEQ, Value.BinOpFunc.SAME, Value.BinOpFunc.NSAME, Value.BinOpFunc.LT, Value.BinOpFunc.GT,
+    Value.BinOpFunc.LTE, Value.BinOpFunc.GTE, Value.BinOpFunc.AND, Value.BinOpFunc.OR, Value.BinOpFunc.RANGE
+  );
+  private static final List<Value.UnOpFunc> UN_OPS = List.of(
+    Value.UnOpFunc.ABS, Value.UnOpFunc.POS, Value.UnOpFunc.NEG, Value.UnOpFunc.NOT, Value.UnOpFunc.INC, Value.UnOpFunc.DEC, Value.UnOpFunc.SPREAD
+  );
+  
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+  
+  private ASTSerializer() {}
+  
+  public static byte[] serialize(AST node) {
+    var serializer = new ASTSerializer();
+    serializer.write(node);
+    return serializer.out.toByteArray();
+  }
+  
+  public static AST deserialize(ByteBuffer in, Names names) {
+    try {
+      var node = new Reader(in, names).read();
+      if (in.hasRemaining()) throw new DataException("trailing data after serialized AST");
+      return node;
+    } catch (BufferUnderflowException | IndexOutOfBoundsException | ClassCastException e) {
+      throw new DataException("corrupt serialized AST", e);
+    }
+  }
+  
+  private void write(AST node) {
+    if (node == null) {
+      tag(NULL);
+    } else {
+      node.accept(this);
+      write(node.position());
+    }
+  }
+  
+  private void write(AST[] nodes) {
+    write(nodes.length);
+    for (var node : nodes) write(node);
+  }
+  
+  private void write(String string) {
+    if (string == null) {
+      write(-1);
+    } else {
+      var bytes = string.getBytes(StandardCharsets.UTF_8);
+      write(bytes.length);
+      out.writeBytes(bytes);
+    }
+  }
+  
+  private void write(int value) {
+    for (var shift = 24; shift >= 0; shift -= 8) out.write(value >>> shift);
+  }
+  
+  private void write(double value) {
+    var bits = Double.doubleToRawLongBits(value);
+    write((int) (bits >>> 32));
+    write((int) bits);
+  }
+  
+  private Void tag(int tag) {
+    out.write(tag);
+    return null;
+  }
+  
+  public Void visitDefs(DefsNode node) {
+    tag(DEFS);
+    write(node.defs);
+    return null;
+  }
+  
+  public Void visitDef(DefNode node) {
+    tag(DEF);
+    write(node.def);
+    write(node.value);
+    tag(node.mutable ? TRUE : FALSE);
+    return null;
+  }
+  
+  public Void visitParams(ParamsNode node) {
+    tag(PARAMS);
+    write(node.params);
+    write(node.varargs);
+    return null;
+  }
+  
+  public Void visitBranch(BranchNode node) {
+    tag(BRANCH);
+    write(node.condition);
+    write(node.tBranch);
+    write(node.fBranch);
+    return null;
+  }
+  
+  public Void visitLoop(LoopNode node) {
+    tag(LOOP);
+    write(node.init);
+    write(node.condition);
+    write(node.loopEnd);
+    write(node.loop);
+    write(node.noLoop);
+    write(node.combinator);
+    return null;
+  }
+  
+  public Void visitIterator(IteratorNode node) {
+    tag(ITERATOR);
+    write(node.name);
+    write(node.iterable);
+    write(node.loop);
+    write(node.noLoop);
+    write(node.combinator);
+    return null;
+  }
+  
+  public Void visitException(ExceptionNode node) {
+    tag(EXCEPTION);
+    write(node.throwing);
+    write(node.handler);
+    write(node.always);
+    write(node.name);
+    return null;
+  }
+  
+  public Void visitScope(ScopeNode node) {
+    tag(SCOPE);
+    write(node.implicit);
+    write(node.value);
+    return null;
+  }
+  
+  public Void visitBinOp(BinOpNode node) {
+    tag(BIN_OP);
+    write(node.left);
+    write(node.right);
+    tag(node.op == null ? -1 : BIN_OPS.indexOf(node.op));
+    tag(node.assign ? TRUE : FALSE);
+    return null;
+  }
+  
+  public Void visitUnOp(UnOpNode node) {
+    tag(UN_OP);
+    write(node.operand);
+    tag(UN_OPS.indexOf(node.op));
+    return null;
+  }
+  
+  public Void visitModOp(ModOpNode node) {
+    tag(MOD_OP);
+    write(node.operand);
+    tag(UN_OPS.indexOf(node.op));
+    tag(node.after ? TRUE : FALSE);
+    return null;
+  }
+  
+  public Void visitJump(JumpNode node) {
+    tag(JUMP);
+    tag(node.type.ordinal());
+    write(node.operand);
+    return null;
+  }
+  
+  public Void visitType(TypeNode node) {
+    tag(TYPE);
+    write(node.operand);
+    return null;
+  }
+  
+  public Void visitCall(CallNode node) {
+    tag(CALL);
+    write(node.callee);
+    write(node.args);
+    return null;
+  }
+  
+  public Void visitMember(MemberNode node) {
+    tag(MEMBER);
+    write(node.object);
+    write(node.member);
+    tag(node.optional ? TRUE : FALSE);
+    return null;
+  }
+  
+  public Void visitVar(VarNode node) {
+    tag(VAR);
+    write(node.name);
+    return null;
+  }
+  
+  public Void visitFunc(FuncNode node) {
+    tag(FUNC);
+    write(node.params);
+    write(node.body);
+    return null;
+  }
+  
+  public Void visitObj(ObjNode node) {
+    tag(OBJ);
+    write(node.meta);
+    write(node.fields);
+    return null;
+  }
+  
+  public Void visitField(FieldNode node) {
+    tag(FIELD);
+    write(node.key);
+    write(node.value);
+    tag(node.mutable ? TRUE : FALSE);
+    return null;
+  }
+  
+  public Void visitString(StringNode node) {
+    tag(STRING);
+    write(node.value.toString());
+    return null;
+  }
+  
+  public Void visitNumber(NumberNode node) {
+    tag(NUMBER);
+    write(node.value.value);
+    return null;
+  }
+  
+  public Void visitBool(BoolNode node) {
+    return tag(node.value ? TRUE : FALSE);
+  }
+  
+  public Void visitNil(NilNode node) {
+    return tag(NIL);
+  }
+  
+  private static final class Reader {
+    
+    private final ByteBuffer in;
+    private final Names names;
+    
+    public Reader(ByteBuffer in, Names names) {
+      this.in = in;
+      this.names = names;
+    }
+    
+    public AST read() {
+      var tag = in.get();
+      if (tag == NULL) return null;
+      var node = node(tag);
+      var position = in.getInt();
+      return position == 0 || node == BoolNode.TRUE || node == BoolNode.FALSE || node == NilNode.VALUE ? node : at(node, position);
+    }
+    
+    private AST node(byte tag) {
+      switch (tag) {
+        case DEFS: return new DefsNode(array(DefNode.class, DefNode[]::new));
+        case DEF: return new DefNode(read(), read(), flag());
+        case PARAMS: return new ParamsNode(array(DefNode.class, DefNode[]::new), string());
+        case BRANCH: return new BranchNode(read(), read(), read());
+        case LOOP: return new LoopNode(read(), read(), read(), read(), read(), read());
+        case ITERATOR: return new IteratorNode(string(), read(), read(), read(), read());
+        case EXCEPTION: return new ExceptionNode(read(), read(), read(), string());
+        case SCOPE: return new ScopeNode(read(), read());
+        case BIN_OP: {
+          AST left = read(), right = read();
+          var op = in.get();
+          return new BinOpNode(left, right, op < 0 ? null : BIN_OPS.get(op), flag());
+        }
+        case UN_OP: return new UnOpNode(read(), UN_OPS.get(in.get()));
+        case MOD_OP: return new ModOpNode(read(), UN_OPS.get(in.get()), flag());
+        case JUMP: return new JumpNode(JumpNode.Type.values()[in.get()], read());
+        case TYPE: return new TypeNode(read());
+        case CALL: return new CallNode(read(), array(AST.class, AST[]::new));
+        case MEMBER: return new MemberNode(read(), read(), flag());
+        case VAR: return new VarNode(string());
+        case FUNC: return new FuncNode((ParamsNode) read(), read());
+        case OBJ: return new ObjNode(read(), array(FieldNode.class, FieldNode[]::new));
+        case FIELD: return new FieldNode(read(), read(), flag());
+        case STRING: return new StringNode(string());
+        case NUMBER: return new NumberNode(in.getDouble());
+        case TRUE: return BoolNode.TRUE;
+        case FALSE: return BoolNode.FALSE;
+        case NIL: return NilNode.VALUE;
+      }
+      throw new DataException("unknown AST tag " + tag);
+    }
+    
+    private <N extends AST> N[] array(Class<N> type, IntFunction<N[]> constructor) {
+      var size = in.getInt();
+      if (size < 0 || size > in.remaining()) throw new DataException("corrupt serialized AST");
+      var array = constructor.apply(size);
+      for (var i = 0; i < size; i++) array[i] = type.cast(read());
+      return array;
+    }
+    
+    private boolean flag() {
+      return in.get() == TRUE;
+    }
+    
+    private String string() {
+      var length = in.getInt();
+      if (length < 0) return null;
+      if (length > in.remaining()) throw new DataException("corrupt serialized AST");
+      var bytes = new byte[length];
+      in.get(bytes);
+      return names.intern(new String(bytes, StandardCharsets.UTF_8));
+    }
+    
+  }
+  
+}
\ No newline at end of file
@@ -1,15 +1,37 @@
 package thing;
 
-import java.util.List;
 import java.util.ArrayList;
 
+import org.antlr.v4.runtime.Token;
+
 import static thing.AST.*;
 import static thing.ThingParser.*;
 
 class ASTTranslator extends ThingBaseVisitor<AST> {
   
+  private static final DefNode[] NO_DEFS = {};
+  private static final FieldNode[] NO_FIELDS = {};
+  private static final AST[] NO_ARGS = {};
+  
+  private final Names names;
   private boolean mutable = false;
   
+  public ASTTranslator(Names names) {
+    this.names = names;
+  }
+  
+  public ASTTranslator() {
+    this(new Names());
+  }
+  
+  private static <N extends AST> N at(N node, Token token) {
+    return AST.at(node, token.getLine(), token.getCharPositionInLine());
+  }
+  
+  private String name(Token token) {
+    return names.intern(token.getText());
+  }
+  
   @Override
   public DefsNode visitFile(FileContext ctx) {
     var defs = new ArrayList<DefNode>();
@@ -18,7 +40,7 @@ class ASTTranslator extends ThingBaseVisitor<AST> {
       if (result instanceof DefsNode) for (var subdef : ((DefsNode) result).defs) defs.add(subdef);
       else defs.add((DefNode) result);
     }
-    return new DefsNode(defs);
+    return new DefsNode(defs.toArray(NO_DEFS));
   }
   
   @Override
@@ -39,41 +61,41 @@ class ASTTranslator extends ThingBaseVisitor<AST> {
       mutable = ctx.LET() == null;
       defs.add((DefNode) varInit.accept(this));
     }
-    return new DefsNode(defs);
+    return at(new DefsNode(defs.toArray(NO_DEFS)), ctx.start);
   }
   
   @Override
   public DefNode visitVarInit(VarInitContext ctx) {
     var mutable = this.mutable;
-    return new DefNode(ctx.factor().accept(this), ctx.ASSIGN() == null ? null : ctx.noSpliceExpr().accept(this), mutable);
+    return at(new DefNode(ctx.factor().accept(this), ctx.ASSIGN() == null ? null : ctx.noSpliceExpr().accept(this), mutable), ctx.start);
   }
   
   @Override
   public DefNode visitFuncDef(FuncDefContext ctx) {
-    return new DefNode(ctx.factor().accept(this), new FuncNode((ParamsNode) ctx.params().accept(this), ctx.expr().accept(this)), false);
+    return at(new DefNode(ctx.factor().accept(this), at(new FuncNode((ParamsNode) ctx.params().accept(this), ctx.expr().accept(this)), ctx.start), false), ctx.start);
   }
   
   @Override
   public ParamsNode visitParams(ParamsContext ctx) {
     var params = new ArrayList<DefNode>();
     for (var param : ctx.param()) params.add((DefNode) param.accept(this));
-    return new ParamsNode(params, ctx.ELLIPSIS() == null ? null : ctx.ID().getSymbol().getText());
+    return at(new ParamsNode(params.toArray(NO_DEFS), ctx.ELLIPSIS() == null ? null : name(ctx.ID().getSymbol())), ctx.start);
   }
   
   @Override
   public DefNode visitParam(ParamContext ctx) {
-    return new DefNode(new VarNode(ctx.ID().getSymbol().getText()), ctx.ASSIGN() == null ? ctx.QMARK() == null ? null : NilNode.VALUE : ctx.noSpliceExpr().accept(this), true);
+    return at(new DefNode(at(new VarNode(name(ctx.ID().getSymbol())), ctx.start), ctx.ASSIGN() == null ? ctx.QMARK() == null ? null : NilNode.VALUE : ctx.noSpliceExpr().accept(this), true), ctx.start);
   }
   
   @Override
   public DefNode visitDoBlock(DoBlockContext ctx) {
-    return new DefNode(null, ctx.expr().accept(this), false);
+    return at(new DefNode(null, ctx.expr().accept(this), false), ctx.start);
   }
   
   @Override
   public AST visitExpr(ExprContext ctx) {
     var value = ctx.noSpliceExpr().accept(this);
-    if (ctx.SEMI() != null) value = new BinOpNode(value, ctx.expr().accept(this), Value.BinOpFunc.SEQUENCE);
+    if (ctx.SEMI() != null) value = at(new BinOpNode(value, ctx.expr().accept(this), Value.BinOpFunc.SEQUENCE), ctx.SEMI().getSymbol());
     return value;
   }
   
@@ -92,17 +114,17 @@ class ASTTranslator extends ThingBaseVisitor<AST> {
     if (ctx.IF() != null) {
       AST condition = ctx.noSpliceExpr(i++).accept(this), tBranch = ctx.noSpliceExpr(i++).accept(this), fBranch = null;
       if (ctx.ELSE() != null) fBranch = ctx.noSpliceExpr(i++).accept(this);
-      return new BranchNode(condition, tBranch, fBranch);
+      return at(new BranchNode(condition, tBranch, fBranch), ctx.start);
     } else if (ctx.WHILE() != null) {
       AST condition = ctx.noSpliceExpr(i++).accept(this), loop = null, noLoop = null, combinator = null;
       if (ctx.ON() != null) {
         var binOp = ctx.binOp();
         final VarNode leftVar = new VarNode("l"), rightVar = new VarNode("r");
-        combinator = binOp == null ? ctx.noSpliceExpr(i++).accept(this) : new FuncNode(new ParamsNode(List.of(new DefNode(leftVar, null, true), new DefNode(rightVar, null, true)), null), ((BinOpNode) binOp.accept(this)).withOperands(leftVar, rightVar));
+        combinator = binOp == null ? ctx.noSpliceExpr(i++).accept(this) : new FuncNode(new ParamsNode(new DefNode[] {new DefNode(leftVar, null, true), new DefNode(rightVar, null, true)}, null), ((BinOpNode) binOp.accept(this)).withOperands(leftVar, rightVar));
       }
       loop = ctx.noSpliceExpr(i++).accept(this);
       if (ctx.ELSE() != null) noLoop = ctx.noSpliceExpr(i++).accept(this);
-      return new LoopNode(null, condition, null, loop, noLoop, combinator);
+      return at(new LoopNode(null, condition, null, loop, noLoop, combinator), ctx.start);
     } else if (ctx.FOR() != null) {
       if (ctx.iterable == null) {
         AST loop = null, noLoop = null, combinator = null;
@@ -112,30 +134,30 @@ class ASTTranslator extends ThingBaseVisitor<AST> {
         if (ctx.ON() != null) {
           var binOp = ctx.binOp();
           final VarNode leftVar = new VarNode("l"), rightVar = new VarNode("r");
-          combinator = binOp == null ? ctx.noSpliceExpr(i++).accept(this) : new FuncNode(new ParamsNode(List.of(new DefNode(leftVar, null, true), new DefNode(rightVar, null, true)), null), ((BinOpNode) binOp.accept(this)).withOperands(leftVar, rightVar));
+          combinator = binOp == null ? ctx.noSpliceExpr(i++).accept(this) : new FuncNode(new ParamsNode(new DefNode[] {new DefNode(leftVar, null, true), new DefNode(rightVar, null, true)}, null), ((BinOpNode) binOp.accept(this)).withOperands(leftVar, rightVar));
         }
         loop = ctx.noSpliceExpr(i++).accept(this);
         if (ctx.ELSE() != null) noLoop = ctx.noSpliceExpr(i++).accept(this);
-        return new LoopNode(ctx.init == null ? null : ctx.init.accept(this), ctx.condition == null ? BoolNode.TRUE : ctx.condition.accept(this), ctx.loopEnd == null ? null : ctx.loopEnd.accept(this), loop, noLoop, combinator);
+        return at(new LoopNode(ctx.init == null ? null : ctx.init.accept(this), ctx.condition == null ? BoolNode.TRUE : ctx.condition.accept(this), ctx.loopEnd == null ? null : ctx.loopEnd.accept(this), loop, noLoop, combinator), ctx.start);
       } else {
         AST loop = null, noLoop = null, combinator = null;
         i++;
         if (ctx.ON() != null) {
           var binOp = ctx.binOp();
           final VarNode leftVar = new VarNode("l"), rightVar = new VarNode("r");
-          combinator = binOp == null ? ctx.noSpliceExpr(i++).accept(this) : new FuncNode(new ParamsNode(List.of(new DefNode(leftVar, null, true), new DefNode(rightVar, null, true)), null), ((BinOpNode) binOp.accept(this)).withOperands(leftVar, rightVar));
+          combinator = binOp == null ? ctx.noSpliceExpr(i++).accept(this) : new FuncNode(new ParamsNode(new DefNode[] {new DefNode(leftVar, null, true), new DefNode(rightVar, null, true)}, null), ((BinOpNode) binOp.accept(this)).withOperands(leftVar, rightVar));
         }
         loop = ctx.noSpliceExpr(i++).accept(this);
         if (ctx.ELSE() != null) noLoop = ctx.noSpliceExpr(i++).accept(this);
-        return new IteratorNode(ctx.IN() == null ? null : ctx.ID().getSymbol().getText(), ctx.iterable.accept(this), loop, noLoop, combinator);
+        return at(new IteratorNode(ctx.IN() == null ? null : name(ctx.ID().getSymbol()), ctx.iterable.accept(this), loop, noLoop, combinator), ctx.start);
       }
     } else if (ctx.TRY() != null) {
       AST throwing = ctx.noSpliceExpr(i++).accept(this), handler = null, always = null;
       if (ctx.CATCH() != null) handler = ctx.noSpliceExpr(i++).accept(this);
       if (ctx.FINALLY() != null) always = ctx.noSpliceExpr(i++).accept(this);
-      return new ExceptionNode(throwing, handler, always, ctx.WITH() == null ? null : ctx.ID().getSymbol().getText());
+      return at(new ExceptionNode(throwing, handler, always, ctx.WITH() == null ? null : name(ctx.ID().getSymbol())), ctx.start);
     } else if (ctx.WITH() != null) {
-      return new ScopeNode(ctx.noSpliceExpr(i++).accept(this), ctx.noSpliceExpr(i++).accept(this));
+      return at(new ScopeNode(ctx.noSpliceExpr(i++).accept(this), ctx.noSpliceExpr(i++).accept(this)), ctx.start);
     }
     throw null;
   }
@@ -156,10 +178,10 @@ class ASTTranslator extends ThingBaseVisitor<AST> {
         for (var unOp : ctx.unOp()) value = ((UnOpNode) unOp.accept(this)).withOperand(value);
         return value;
       } else {
-        return new UnOpNode(ctx.modOpExpr().accept(this), Value.UnOpFunc.SPREAD);
+        return at(new UnOpNode(ctx.modOpExpr().accept(this), Value.UnOpFunc.SPREAD), ctx.ELLIPSIS().getSymbol());
       }
     } else {
-      return new UnOpNode(ctx.abs.accept(this), Value.UnOpFunc.ABS);
+      return at(new UnOpNode(ctx.abs.accept(this), Value.UnOpFunc.ABS), ctx.start);
     }
   }
   
@@ -172,23 +194,23 @@ class ASTTranslator extends ThingBaseVisitor<AST> {
   public BinOpNode visitBinOp(BinOpContext ctx) {
     var assign = ctx.ASSIGN() != null;
     switch (ctx.start.getType()) {
-      case ThingParser.ADD: return new BinOpNode(null, null, Value.BinOpFunc.ADD, assign);
-      case ThingParser.SUB: return new BinOpNode(null, null, Value.BinOpFunc.SUB, assign);
-      case ThingParser.MUL: return new BinOpNode(null, null, Value.BinOpFunc.MUL, assign);
-      case ThingParser.DIV: return new BinOpNode(null, null, Value.BinOpFunc.DIV, assign);
-      case ThingParser.MOD: return new BinOpNode(null, null, Value.BinOpFunc.MOD, assign);
-      case ThingParser.EQ: return new BinOpNode(null, null, Value.BinOpFunc.EQ);
-      case ThingParser.NEQ: return new BinOpNode(null, null, Value.BinOpFunc.NEQ);
-      case ThingParser.SAME: return new BinOpNode(null, null, Value.BinOpFunc.SAME);
-      case ThingParser.NSAME: return new BinOpNode(null, null, Value.BinOpFunc.NSAME);
-      case ThingParser.LT: return new BinOpNode(null, null, Value.BinOpFunc.LT);
-      case ThingParser.LTE: return new BinOpNode(null, null, Value.BinOpFunc.LTE);
-      case ThingParser.GT: return new BinOpNode(null, null, Value.BinOpFunc.GT);
-      case ThingParser.GTE: return new BinOpNode(null, null, Value.BinOpFunc.GTE);
-      case ThingParser.AND: return new BinOpNode(null, null, Value.BinOpFunc.AND);
-      case ThingParser.OR: return new BinOpNode(null, null, Value.BinOpFunc.OR);
-      case ThingParser.RANGE: return new BinOpNode(null, null, Value.BinOpFunc.RANGE);
-      default: if (assign) return new BinOpNode(null, null, null, true);
+      case ThingParser.ADD: return at(new BinOpNode(null, null, Value.BinOpFunc.ADD, assign), ctx.start);
+      case ThingParser.SUB: return at(new BinOpNode(null, null, Value.BinOpFunc.SUB, assign), ctx.start);
+      case ThingParser.MUL: return at(new BinOpNode(null, null, Value.BinOpFunc.MUL, assign), ctx.start);
+      case ThingParser.DIV: return at(new BinOpNode(null, null, Value.BinOpFunc.DIV, assign), ctx.start);
+      case ThingParser.MOD: return at(new BinOpNode(null, null, Value.BinOpFunc.MOD, assign), ctx.start);
+      case ThingParser.EQ: return at(new BinOpNode(null, null, Value.BinOpFunc.EQ), ctx.start);
+      case ThingParser.NEQ: return at(new BinOpNode(null, null, Value.BinOpFunc.NEQ), ctx.start);
+      case ThingParser.SAME: return at(new BinOpNode(null, null, Value.BinOpFunc.SAME), ctx.start);
+      case ThingParser.NSAME: return at(new BinOpNode(null, null, Value.BinOpFunc.NSAME), ctx.start);
+      case ThingParser.LT: return at(new BinOpNode(null, null, Value.BinOpFunc.LT), ctx.start);
+      case ThingParser.LTE: return at(new BinOpNode(null, null, Value.BinOpFunc.LTE), ctx.start);
+      case ThingParser.GT: return at(new BinOpNode(null, null, Value.BinOpFunc.GT), ctx.start);
+      case ThingParser.GTE: return at(new BinOpNode(null, null, Value.BinOpFunc.GTE), ctx.start);
+      case ThingParser.AND: return at(new BinOpNode(null, null, Value.BinOpFunc.AND), ctx.start);
+      case ThingParser.OR: return at(new BinOpNode(null, null, Value.BinOpFunc.OR), ctx.start);
+      case ThingParser.RANGE: return at(new BinOpNode(null, null, Value.BinOpFunc.RANGE), ctx.start);
+      default: if (assign) return at(new BinOpNode(null, null, null, true), ctx.start);
     }
     throw null;
   }
@@ -196,9 +218,9 @@ class ASTTranslator extends ThingBaseVisitor<AST> {
   @Override
   public UnOpNode visitUnOp(UnOpContext ctx) {
     switch (ctx.start.getType()) {
-      case ThingParser.ADD: return new UnOpNode(null, Value.UnOpFunc.POS);
-      case ThingParser.SUB: return new UnOpNode(null, Value.UnOpFunc.NEG);
-      case ThingParser.NOT: return new UnOpNode(null, Value.UnOpFunc.NOT);
+      case ThingParser.ADD: return at(new UnOpNode(null, Value.UnOpFunc.POS), ctx.start);
+      case ThingParser.SUB: return at(new UnOpNode(null, Value.UnOpFunc.NEG), ctx.start);
+      case ThingParser.NOT: return at(new UnOpNode(null, Value.UnOpFunc.NOT), ctx.start);
     }
     throw null;
   }
@@ -206,9 +228,9 @@ class ASTTranslator extends ThingBaseVisitor<AST> {
   @Override
   public ModOpNode visitModOp(ModOpContext ctx) {
     switch (ctx.start.getType()) {
-      case ThingParser.ADDADD: return new ModOpNode(null, Value.UnOpFunc.INC, false);
-      case ThingParser.SUBSUB: return new ModOpNode(null, Value.UnOpFunc.DEC, false);
-      case ThingParser.NOTNOT: return new ModOpNode(null, Value.UnOpFunc.NOT, false);
+      case ThingParser.ADDADD: return at(new ModOpNode(null, Value.UnOpFunc.INC, false), ctx.start);
+      case ThingParser.SUBSUB: return at(new ModOpNode(null, Value.UnOpFunc.DEC, false), ctx.start);
+      case ThingParser.NOTNOT: return at(new ModOpNode(null, Value.UnOpFunc.NOT, false), ctx.start);
     }
     throw null;
   }
@@ -222,9 +244,9 @@ class ASTTranslator extends ThingBaseVisitor<AST> {
       if (literal != null) return literal.accept(this);
       var varDef = ctx.varDef();
       if (varDef != null) return varDef.accept(this);
-      if (ctx.THIS() != null) return new VarNode(Value.Function.THIS);
+      if (ctx.THIS() != null) return at(new VarNode(Value.Function.THIS), ctx.start);
       var ID = ctx.ID();
-      if (ID != null) return new VarNode(ID.getSymbol().getText());
+      if (ID != null) return at(new VarNode(name(ID.getSymbol())), ctx.start);
       JumpNode.Type type = null;
       switch (ctx.start.getType()) {
         case ThingParser.RETURN:
@@ -241,14 +263,14 @@ class ASTTranslator extends ThingBaseVisitor<AST> {
           break;
       }
       var noSpliceExpr = ctx.noSpliceExpr();
-      return new JumpNode(type, noSpliceExpr == null ? null : noSpliceExpr.accept(this));
+      return at(new JumpNode(type, noSpliceExpr == null ? null : noSpliceExpr.accept(this)), ctx.start);
     } else {
       if (ctx.TYPEOF() != null) {
-        return new TypeNode(factor.accept(this));
+        return at(new TypeNode(factor.accept(this)), ctx.start);
       } else if (ctx.META() != null) {
         var brackLit = ctx.brackLit();
         var obj = (ObjNode) (brackLit == null ? ctx.braceLit().accept(this) : brackLit.accept(this));
-        return new ObjNode(factor.accept(this), obj.fields);
+        return at(new ObjNode(factor.accept(this), obj.fields), ctx.META().getSymbol());
       } else if (ctx.LBRACK() != null || ctx.QUOT() != null) {
         AST value = null;
         var expr = ctx.expr(0);
@@ -256,25 +278,26 @@ class ASTTranslator extends ThingBaseVisitor<AST> {
         var simpleLit = ctx.simpleLit();
         if (simpleLit != null) value = simpleLit.accept(this);
         var ID = ctx.ID();
-        if (ID != null) value = new StringNode(ID.getSymbol().getText());
-        return new MemberNode(factor.accept(this), value, ctx.QMARK() != null);
+        if (ID != null) value = at(new StringNode(name(ID.getSymbol())), ID.getSymbol());
+        var start = ctx.QMARK() != null ? ctx.QMARK() : ctx.LBRACK() != null ? ctx.LBRACK() : ctx.QUOT();
+        return at(new MemberNode(factor.accept(this), value, ctx.QMARK() != null), start.getSymbol());
       } else {
         var callee = factor.accept(this);
         if (ctx.LPAREN() != null) {
           var args = new ArrayList<AST>();
           for (var expr : ctx.expr()) args.add(expr.accept(this));
-          return new CallNode(callee, args);
+          return at(new CallNode(callee, args.toArray(NO_ARGS)), ctx.LPAREN().getSymbol());
         }
-        return new CallNode(callee, List.of(ctx.simpleLit().accept(this)));
+        return at(new CallNode(callee, new AST[] {ctx.simpleLit().accept(this)}), ctx.simpleLit().start);
       }
     }
   }
   
   @Override
   public AST visitFuncLit(FuncLitContext ctx) {
-    AST value = new FuncNode((ParamsNode) ctx.params().accept(this), ctx.noSpliceExpr().accept(this));
+    AST value = at(new FuncNode((ParamsNode) ctx.params().accept(this), ctx.noSpliceExpr().accept(this)), ctx.start);
     var factor = ctx.factor();
-    if (factor != null) value = new DefNode(factor.accept(this), value, false);
+    if (factor != null) value = at(new DefNode(factor.accept(this), value, false), ctx.start);
     return value;
   }
   
@@ -282,11 +305,11 @@ class ASTTranslator extends ThingBaseVisitor<AST> {
   public ObjNode visitBrackLit(BrackLitContext ctx) {
     var fields = new ArrayList<FieldNode>();
     var i = 0;
-    AST key = null;
-    if (ctx.COLON(0) == null) for (var expr : ctx.expr()) fields.add(new FieldNode(new NumberNode(i++) , expr.accept(this), true));
-    else for (var expr : ctx.expr()) if (i++ % 2 == 0) key = expr.accept(this);
-    else fields.add(new FieldNode(key, expr.accept(this), true));
-    return new ObjNode(null, fields);
+    ExprContext key = null;
+    if (ctx.COLON(0) == null) for (var expr : ctx.expr()) fields.add(at(new FieldNode(new NumberNode(i++) , expr.accept(this), true), expr.start));
+    else for (var expr : ctx.expr()) if (i++ % 2 == 0) key = expr;
+    else fields.add(at(new FieldNode(key.accept(this), expr.accept(this), true), key.start));
+    return at(new ObjNode(null, fields.toArray(NO_FIELDS)), ctx.start);
   }
   
   @Override
@@ -298,16 +321,20 @@ class ASTTranslator extends ThingBaseVisitor<AST> {
       else fields.add((FieldNode) result);
     } else {
       var i = 0;
-      for (var objId : ctx.objId()) fields.add(new FieldNode(objId.accept(this), ctx.expr(i++).accept(this), true));
+      for (var objId : ctx.objId()) fields.add(at(new FieldNode(objId.accept(this), ctx.expr(i++).accept(this), true), objId.start));
     }
-    return new ObjNode(null, fields);
+    return at(new ObjNode(null, fields.toArray(NO_FIELDS)), ctx.start);
   }
   
   @Override
   public AST visitSimpleLit(SimpleLitContext ctx) {
     switch (ctx.start.getType()) {
-      case ThingParser.STRING: return StringNode.of(ctx.start);
-      case ThingParser.NUMBER: return NumberNode.of(ctx.start);
+      case ThingParser.STRING: try {
+        return at(StringNode.of(ctx.start.getText()), ctx.start);
+      } catch (LiteralException e) {
+        throw new ASTLexer.SyntaxException(ctx.start.getLine(), ctx.start.getCharPositionInLine(), e.getMessage());
+      }
+      case ThingParser.NUMBER: return at(NumberNode.of(ctx.start.getText()), ctx.start);
       case ThingParser.TRUE: return BoolNode.TRUE;
       case ThingParser.FALSE: return BoolNode.FALSE;
       case ThingParser.NIL: return NilNode.VALUE;
@@ -320,7 +347,7 @@ class ASTTranslator extends ThingBaseVisitor<AST> {
     if (ctx.LBRACK() != null) return ctx.expr().accept(this);
     var simpleLit = ctx.simpleLit();
     if (simpleLit != null) return simpleLit.accept(this);
-    return new StringNode(ctx.ID().getSymbol().getText());
+    return at(new StringNode(name(ctx.ID().getSymbol())), ctx.start);
   }
   
   @Override
@@ -330,7 +357,7 @@ class ASTTranslator extends ThingBaseVisitor<AST> {
     var objFuncDef = ctx.objFuncDef();
     if (objFuncDef != null) return objFuncDef.accept(this);
     var doBlock = ctx.doBlock();
-    if (doBlock != null) return new FieldNode(null, ((DefNode) doBlock.accept(this)).value, false);
+    if (doBlock != null) return at(new FieldNode(null, ((DefNode) doBlock.accept(this)).value, false), ctx.start);
     return null;
   }
   
@@ -341,19 +368,19 @@ class ASTTranslator extends ThingBaseVisitor<AST> {
       mutable = ctx.LET() == null;
       fields.add((FieldNode) objVarInit.accept(this));
     }
-    return new ObjNode(null, fields);
+    return new ObjNode(null, fields.toArray(NO_FIELDS));
   }
   
   @Override
   public FieldNode visitObjVarInit(ObjVarInitContext ctx) {
     var mutable = this.mutable;
     var noSpliceExpr = ctx.noSpliceExpr();
-    return new FieldNode(ctx.objId().accept(this), noSpliceExpr == null ? NilNode.VALUE : noSpliceExpr.accept(this), mutable);
+    return at(new FieldNode(ctx.objId().accept(this), noSpliceExpr == null ? NilNode.VALUE : noSpliceExpr.accept(this), mutable), ctx.start);
   }
   
   @Override
   public FieldNode visitObjFuncDef(ObjFuncDefContext ctx) {
-    return new FieldNode(ctx.objId().accept(this), new FuncNode((ParamsNode) ctx.params().accept(this), ctx.expr().accept(this)), false);
+    return at(new FieldNode(ctx.objId().accept(this), at(new FuncNode((ParamsNode) ctx.params().accept(this), ctx.expr().accept(this)), ctx.start), false), ctx.start);
   }
   
 }
\ No newline at end of file
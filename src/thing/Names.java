@@ -0,0 +1,16 @@
+package thing;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// one table per run, shared by the files it parses in parallel and by the cache loader
+final class Names {
+  
+  private final ConcurrentHashMap<String, String> names = new ConcurrentHashMap<>();
+  
+  public String intern(String name) {
+    if (name == null) return null;
+    var interned = names.putIfAbsent(name, name);
+    return interned == null ? name : interned;
+  }
+  
+}
\ No newline at end of file
@@ -1,25 +1,35 @@
 package thing;
 
 import java.lang.reflect.Modifier;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.ArrayList;
 
 class Scope {
   
+  public static final int WITH = 0xFFFF;
+  private static final Value[] NO_SLOTS = {};
+  private static final byte[] NO_FLAGS = {};
+  private static final byte DECLARED = 1, MUTABLE = 2;
+  
   public final Scope parent;
+  private final Scope root;
   private final Value.Object values;
+  private Value[] slots = NO_SLOTS;
+  private byte[] flags = NO_FLAGS;
   
   private Scope(Scope parent, Value.Object values) {
     this.parent = parent;
+    this.root = parent == null ? this : parent.root;
     this.values = values;
   }
   
-  private Scope(Scope parent) {
-    this(parent, Value.Object.of());
+  public static int address(int depth, int slot) {
+    return depth << 16 | slot;
   }
   
-  public static Scope empty() {
-    var scope = new Scope(null);
+  public static Scope empty(Value.Object.Shape root) {
+    var scope = new Scope(null, Value.Object.of(root));
     {
       scope.define("print", Value.Function.of(new Value[1], true, args -> {
         var i = 0;
@@ -38,16 +48,17 @@ class Scope {
         System.out.println();
         return args[i - 1];
       }), false);
-      scope.define("Symbol", Value.Object.of(
-        Value.String.of("type"), Value.Symbol.type,
-        Value.String.of("invoke"), Value.Symbol.invoke,
-        Value.String.of("function"), Value.Symbol.function,
-        Value.String.of("symbol"), Value.Symbol.symbol,
-        Value.String.of("object"), Value.Symbol.object,
-        Value.String.of("string"), Value.Symbol.string,
-        Value.String.of("number"), Value.Symbol.number,
-        Value.String.of("bool"), Value.Symbol.bool,
-        Value.String.of("nil"), Value.Symbol.nil,
+      scope.define("Symbol", Value.Object.of(root,
+        Value.String.intern("type"), Value.Symbol.type,
+        Value.String.intern("invoke"), Value.Symbol.invoke,
+        Value.String.intern("function"), Value.Symbol.function,
+        Value.String.intern("symbol"), Value.Symbol.symbol,
+        Value.String.intern("object"), Value.Symbol.object,
+        Value.String.intern("string"), Value.Symbol.string,
+        Value.String.intern("number"), Value.Symbol.number,
+        Value.String.intern("bool"), Value.Symbol.bool,
+        Value.String.intern("nil"), Value.Symbol.nil,
+        Value.String.intern("iterator"), Value.Symbol.iterator,
         Value.Symbol.invoke, Value.Function.of(new Value[] {Value.Nil.VALUE}, false, args -> new Value.Symbol(args[0] instanceof Value.Nil ? null : args[0].toString()))
       ), false);
       scope.define("getMetaobj", Value.Function.of(new Value[1], false, args -> args[0].getMetaobject()), false);
@@ -56,49 +67,97 @@ class Scope {
   }
   
   public final Scope with(Value.Object object) {
-    return new Scope(this, object) {
-      @Override
-      public Scope define(String name, Value value, boolean mutable) {
-        return parent.define(name, value, mutable);
-      }
-    };
+    return new Scope(this, object);
   }
   
   public final Scope child() {
-    return new Scope(this);
+    return new Scope(this, null);
   }
   
   public final Scope brother() {
     return parent.child();
   }
   
-  public Value get(String name) {
-    var value = values.get(Value.String.of(name));
-    if (value == null) {
-      if (parent != null) return parent.get(name);
-      else throw new DataException("missing variable '" + name + '\'');
+  public Value get(Value.String name, int[] path) {
+    for (var address : path) {
+      var scope = up(address >>> 16);
+      var slot = address & 0xFFFF;
+      var value = slot == WITH ? scope.values == null ? null : scope.values.get(name) : slot < scope.slots.length ? scope.slots[slot] : null;
+      if (value != null) return value;
+    }
+    return root.get(name);
+  }
+  
+  public void set(Value.String name, int[] path, Value value) {
+    for (var address : path) {
+      var scope = up(address >>> 16);
+      var slot = address & 0xFFFF;
+      if (slot == WITH ? scope.setWith(name, value) : scope.setSlot(slot, name, value)) return;
+    }
+    root.set(name, value);
+  }
+  
+  public void define(Value.String name, int[] path, Value value, boolean mutable) {
+    if (path.length == 0) root.define(name, value, mutable);
+    else up(path[0] >>> 16).define(path[0] & 0xFFFF, name.toString(), value, mutable);
+  }
+  
+  public Scope define(int slot, String name, Value value, boolean mutable) {
+    if (slot >= flags.length) {
+      var length = Math.max(slot + 1, flags.length * 2);
+      slots = Arrays.copyOf(slots, length);
+      flags = Arrays.copyOf(flags, length);
     }
+    if (flags[slot] != 0 || value == null) throw new DataException("duplicate variable '" + name + '\'');
+    slots[slot] = value;
+    flags[slot] = mutable ? MUTABLE : DECLARED;
+    return this;
+  }
+  
+  private Scope up(int depth) {
+    var scope = this;
+    while (depth --> 0) scope = scope.parent;
+    return scope;
+  }
+  
+  private boolean setSlot(int slot, Value.String name, Value value) {
+    if (slot >= flags.length || flags[slot] == 0) return false;
+    if (flags[slot] != MUTABLE) throw new DataException("can't set immutable variable '" + name + '\'');
+    slots[slot] = value;
+    return true;
+  }
+  
+  private boolean setWith(Value.String name, Value value) {
+    if (values == null) return false;
+    try {
+      return values.set(name, value) != null;
+    } catch (DataException e) {
+      throw new DataException("can't set immutable variable '" + name + '\'');
+    }
+  }
+  
+  private Value get(Value.String name) {
+    var value = values.get(name);
+    if (value == null) throw new DataException("missing variable '" + name + '\'');
     return value;
   }
   
-  public Scope set(String name, Value value) {
-    var key = Value.String.of(name);
+  private void set(Value.String name, Value value) {
     var present = false;
     try {
-      present = values.set(key, value) == null;
+      present = values.set(name, value) == null;
     } catch (DataException e) {
       throw new DataException("can't set immutable variable '" + name + '\'');
     }
-    if (present) {
-      if (parent != null) parent.set(name, value);
-      else throw new DataException("missing variable '" + name + '\'');
-    }
-    return this;
+    if (present) throw new DataException("missing variable '" + name + '\'');
+  }
+  
+  private Scope define(String name, Value value, boolean mutable) {
+    return define(Value.String.intern(name), value, mutable);
   }
   
-  public Scope define(String name, Value value, boolean mutable) {
-    var key = Value.String.of(name);
-    if (values.define(key, value, mutable) == null) throw new DataException("duplicate variable '" + name + '\'');
+  private Scope define(Value.String name, Value value, boolean mutable) {
+    if (values.define(name, value, mutable) == null) throw new DataException("duplicate variable '" + name + '\'');
     return this;
   }
   
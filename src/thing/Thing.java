@@ -1,8 +1,17 @@
 package thing;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.antlr.v4.runtime.*;
 
@@ -11,45 +20,235 @@ final class Thing {
   private Thing() {}
   
   public static void main(String[] args) {
-    var files = new ArrayList<ThingParser.FileContext>();
-    var errorCount = 0;
     if (args.length == 0) {
         System.err.println("expected input files");
         System.exit(1);
     }
-    for (var file : args) try {
-      var input = CharStreams.fromFileName(file);
-      var lexer = new ThingLexer(input);
-      var tokens = new CommonTokenStream(lexer);
-      var parser = new ThingParser(tokens);
-      files.add(parser.file());
-      errorCount += parser.getNumberOfSyntaxErrors();
-    } catch (IOException e) {
-      System.err.println("Error reading file '" + file + "': " + e.getMessage());
-      System.exit(1);
-    }
-    if (errorCount != 0) {
-      System.err.println(errorCount + " errors");
-      System.exit(1);
+    var status = run(args);
+    if (status != 0) System.exit(status);
+  }
+  
+  static int run(String... args) {
+    var names = new Names();
+    ASTCache cache = null;
+    var direct = false;
+    var stream = false;
+    var level = ASTOptimizer.MAX_LEVEL;
+    var stats = false;
+    var files = new ArrayList<String>();
+    for (var arg : args) {
+      if (arg.equals("--cache")) cache = new ASTCache(null, names);
+      else if (arg.startsWith("--cache=")) cache = new ASTCache(Path.of(arg.substring("--cache=".length())), names);
+      else if (arg.equals("--stream")) stream = true;
+      else if (arg.equals("--stats")) stats = true;
+      else if (arg.startsWith("-O")) {
+        level = arg.matches("-O[0-9]+") ? Integer.parseInt(arg.substring(2)) : -1;
+        if (level < 0 || level > ASTOptimizer.MAX_LEVEL) {
+          System.err.println("unknown optimization level '" + arg.substring(2) + "' (expected 0 to " + ASTOptimizer.MAX_LEVEL + ")");
+          return 1;
+        }
+      }
+      else if (arg.equals("--parser=direct")) direct = true;
+      else if (arg.equals("--parser=antlr")) direct = false;
+      else if (arg.startsWith("--parser=")) {
+        System.err.println("unknown parser '" + arg.substring("--parser=".length()) + "' (expected 'antlr' or 'direct')");
+        return 1;
+      } else files.add(arg);
     }
+    var units = new ArrayList<Future<Unit>>();
+    var pool = files.size() < 2 || stream ? null : Executors.newFixedThreadPool(Math.min(files.size(), Runtime.getRuntime().availableProcessors()), runnable -> {
+      var thread = new Thread(runnable, "thing-front-end");
+      thread.setDaemon(true);
+      return thread;
+    });
+    final var unitCache = cache;
+    final var unitDirect = direct;
+    final var unitLevel = level;
+    final var unitStats = stats;
+    var evaluator = new ASTEvaluator();
     try {
-      var translator = new ASTTranslator();
-      var printer = new ASTPrinter();
-      var evaluator = new ASTEvaluator();
-      //for (var file : files) printer.visit(file.accept(translator));
-      for (var file : files) file.accept(translator).accept(evaluator);
+      if (stream) {
+        for (var file : files) {
+          var optimizer = new ASTOptimizer(level, stats);
+          int errors;
+          try {
+            errors = stream(file, direct, names, optimizer, evaluator);
+          } catch (IOException e) {
+            System.err.println("Error reading file '" + file + "': " + e.getMessage());
+            return 1;
+          }
+          if (errors != 0) {
+            System.err.println(errors + " errors");
+            return 1;
+          }
+          if (stats) System.err.println(file + ": " + optimizer.report());
+        }
+        if (stats) System.err.println(evaluator.report());
+        return 0;
+      }
+      for (var file : files) {
+        var unit = new FutureTask<>(() -> Unit.load(file, names, unitCache, unitDirect, unitLevel, unitStats));
+        units.add(unit);
+        if (pool == null) unit.run();
+        else pool.execute(unit);
+      }
+      var errorCount = 0;
+      var loaded = new ArrayList<Unit>();
+      RuntimeException failure = null;
+      for (var i = 0; i < units.size(); i++) {
+        try {
+          var unit = units.get(i).get();
+          System.err.print(unit.messages);
+          errorCount += unit.errors;
+          if (failure == null) loaded.add(unit);
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof IOException) {
+            System.err.println("Error reading file '" + files.get(i) + "': " + e.getCause().getMessage());
+            return 1;
+          }
+          if (!(e.getCause() instanceof RuntimeException)) throw new IllegalStateException(e.getCause());
+          if (failure == null) failure = (RuntimeException) e.getCause();
+        }
+      }
+      if (errorCount != 0) {
+        System.err.println(errorCount + " errors");
+        return 1;
+      }
+      for (var unit : loaded) unit.program.accept(evaluator);
+      if (failure != null) throw failure;
+      if (stats) System.err.println(evaluator.report());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return 1;
     } catch (AST.JumpNode.Exception e) {
       if (e.type == AST.JumpNode.Type.THROW) System.err.println("uncaught exception: " + e.value);
       else System.err.println("Exception: '" + e.type.name().toLowerCase() + "' outside of valid context");
-      System.exit(1);
+      return 1;
     } catch (SpreadException e) {
       System.err.println("Exception: 'spread' outside of valid context");
-      System.exit(1);
+      return 1;
     } catch (RuntimeException e) {
       var message = e.getMessage();
-      System.err.println(e.getClass().getSimpleName() + (message == null ? "" : ": " + message));
-      System.exit(1);
+      var failed = evaluator.failedAt(e);
+      System.err.println(e.getClass().getSimpleName() + (message == null ? "" : ": " + message) + (failed == null ? "" : " (line " + failed.line() + ':' + failed.column() + ')'));
+      return 1;
+    } finally {
+      if (pool != null) pool.shutdownNow();
+    }
+    return 0;
+  }
+  
+  private static int stream(String file, boolean direct, Names names, ASTOptimizer optimizer, ASTEvaluator evaluator) throws IOException {
+    try (var in = Files.newBufferedReader(Path.of(file))) {
+      if (direct) {
+        var parser = new ASTParser(in, names);
+        try {
+          for (AST.DefsNode defs; (defs = parser.nextDef()) != null;) ASTResolver.resolve(optimizer.optimize(defs)).accept(evaluator);
+        } catch (ASTLexer.SyntaxException e) {
+          System.err.println(e.getMessage());
+          return 1;
+        }
+        return 0;
+      }
+      var messages = new Messages();
+      var lexer = new ThingLexer(new UnbufferedCharStream(in));
+      lexer.setTokenFactory(new CommonTokenFactory(true));
+      lexer.removeErrorListeners();
+      lexer.addErrorListener(messages);
+      var parser = new ThingParser(new UnbufferedTokenStream<>(lexer));
+      parser.removeErrorListeners();
+      parser.addErrorListener(messages);
+      var translator = new ASTTranslator(names);
+      while (parser.getInputStream().LA(1) != Token.EOF) {
+        var def = parser.def();
+        System.err.print(messages.flush());
+        if (parser.getNumberOfSyntaxErrors() != 0) break;
+        AST translated;
+        try {
+          translated = def.accept(translator);
+        } catch (ASTLexer.SyntaxException e) {
+          System.err.println(e.getMessage());
+          return 1;
+        }
+        ASTResolver.resolve(optimizer.optimize(translated)).accept(evaluator);
+      }
+      return parser.getNumberOfSyntaxErrors();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+  
+  private static final class Messages extends BaseErrorListener {
+    
+    private final StringBuilder messages = new StringBuilder();
+    
+    @Override
+    public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+      messages.append("line ").append(line).append(':').append(charPositionInLine).append(' ').append(msg).append(System.lineSeparator());
+    }
+    
+    public String flush() {
+      var flushed = messages.toString();
+      messages.setLength(0);
+      return flushed;
+    }
+    
+  }
+  
+  private static final class Unit {
+    
+    public final AST.DefsNode program;
+    public final int errors;
+    public final String messages;
+    
+    private Unit(AST.DefsNode program, int errors, String messages) {
+      this.program = program;
+      this.errors = errors;
+      this.messages = messages;
+    }
+    
+    public static Unit load(String file, Names names, ASTCache cache, boolean direct, int level, boolean stats) throws IOException {
+      var path = Path.of(file);
+      var source = Files.readAllBytes(path);
+      var hash = cache == null ? null : ASTCache.hash(source);
+      var program = cache == null ? null : cache.load(path, hash);
+      if (program != null) return optimized(file, program, level, stats, "");
+      if (direct) {
+        try {
+          program = new ASTParser(new StringReader(new String(source, StandardCharsets.UTF_8)), names).file();
+        } catch (ASTLexer.SyntaxException e) {
+          return new Unit(null, 1, e.getMessage() + System.lineSeparator());
+        }
+        if (cache != null) cache.store(path, hash, program);
+        return optimized(file, program, level, stats, "");
+      }
+      var listener = new Messages();
+      var input = CharStreams.fromString(new String(source, StandardCharsets.UTF_8), file);
+      var lexer = new ThingLexer(input);
+      lexer.removeErrorListeners();
+      lexer.addErrorListener(listener);
+      var tokens = new CommonTokenStream(lexer);
+      var parser = new ThingParser(tokens);
+      parser.removeErrorListeners();
+      parser.addErrorListener(listener);
+      var tree = parser.file();
+      var errors = parser.getNumberOfSyntaxErrors();
+      if (errors != 0) return new Unit(null, errors, listener.flush());
+      try {
+        program = (AST.DefsNode) tree.accept(new ASTTranslator(names));
+      } catch (ASTLexer.SyntaxException e) {
+        return new Unit(null, 1, listener.flush() + e.getMessage() + System.lineSeparator());
+      }
+      if (cache != null) cache.store(path, hash, program);
+      return optimized(file, program, level, stats, listener.flush());
+    }
+    
+    private static Unit optimized(String file, AST.DefsNode program, int level, boolean stats, String messages) {
+      var optimizer = new ASTOptimizer(level, stats);
+      program = (AST.DefsNode) ASTResolver.resolve(optimizer.optimize(program));
+      return new Unit(program, 0, stats ? messages + file + ": " + optimizer.report() + System.lineSeparator() : messages);
     }
+    
   }
   
 }
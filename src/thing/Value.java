@@ -1,10 +1,18 @@
 package thing;
 
+import static thing.Value.BinOpFunc.Dispatch.*;
+
+import java.lang.ref.WeakReference;
 import java.util.Map;
+import java.util.Arrays;
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.WeakHashMap;
 import java.util.ArrayList;
-import java.util.function.Supplier;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 abstract class Value {
   
@@ -29,7 +37,7 @@ abstract class Value {
     
     public static final java.lang.String THIS = "this";
     public static final Object meta = Object.of(
-      String.of("apply"), Function.of(new Value[1], true, (thisArg, args) -> {
+      String.intern("apply"), Function.of(new Value[1], true, (thisArg, args) -> {
         var rest = new ArrayList<Value>();
         for (var i = 1; i < args.length; i++) rest.add(args[i]);
         return functor(thisArg).apply(args[0], rest);
@@ -38,8 +46,8 @@ abstract class Value {
     
     private Function() {}
     
-    public static Function of(ASTEvaluator evaluator, java.lang.String[] params, Value[] defaults, java.lang.String varargs, AST body, Scope scope) {
-      return new Defined(evaluator, params, defaults, varargs, body, scope);
+    public static Function of(ASTEvaluator evaluator, java.lang.String[] params, int[] slots, Value[] defaults, java.lang.String varargs, AST body, Scope scope) {
+      return new Defined(evaluator, params, slots, defaults, varargs, body, scope);
     }
     
     public static Function of(Value[] params, boolean varargs, NativeThisFunction body) {
@@ -56,11 +64,30 @@ abstract class Value {
       return value.getMetaobject().getInvoke();
     }
     
+    public static Function functor(Value value, Cache cache) {
+      var callee = value instanceof Function || value instanceof Object ? value : value.getMetaobject();
+      if (callee == cache.callee && (callee instanceof Function || cache.generation == Object.generation)) {
+        cache.hits++;
+        return cache.target;
+      }
+      cache.misses++;
+      if (callee instanceof Object) ((Object) callee).watch();
+      cache.callee = callee;
+      cache.generation = Object.generation;
+      return cache.target = callee instanceof Function ? (Function) callee : ((Object) callee).getInvoke();
+    }
+    
     public Value call(Iterable<Value> args) {
       return apply(null, args);
     }
     
-    public abstract Value apply(Value thisArg, Iterable<Value> args);
+    public Value apply(Value thisArg, Iterable<Value> args) {
+      var argv = new ArrayList<Value>();
+      args.forEach(argv::add);
+      return apply(thisArg, argv.toArray(new Value[argv.size()]));
+    }
+    
+    public abstract Value apply(Value thisArg, Value... args);
     
     @Override
     public abstract java.lang.String toString();
@@ -94,14 +121,16 @@ abstract class Value {
       
       private final ASTEvaluator evaluator;
       private final java.lang.String[] params;
+      private final int[] slots;
       private final Value[] defaults;
       private final java.lang.String varargs;
       private final AST body;
       private final Scope scope;
       
-      public Defined(ASTEvaluator evaluator, java.lang.String[] params, Value[] defaults, java.lang.String varargs, AST body, Scope scope) {
+      public Defined(ASTEvaluator evaluator, java.lang.String[] params, int[] slots, Value[] defaults, java.lang.String varargs, AST body, Scope scope) {
         this.evaluator = evaluator;
         this.params = params;
+        this.slots = slots;
         this.defaults = defaults;
         this.varargs = varargs;
         this.body = body;
@@ -117,25 +146,19 @@ abstract class Value {
         }
       }
       
-      public Value apply(Value thisArg, Iterable<Value> args) {
+      public Value apply(Value thisArg, Value... args) {
         Scope scope = this.scope.child(), oldScope = evaluator.scope;
-        var varargs = this.varargs == null ? null : Object.of();
         evaluator.scope = scope;
-        scope.define(THIS, thisArg == null ? Value.Nil.VALUE : thisArg, false);
+        evaluator.scopes++;
+        scope.define(0, THIS, thisArg == null ? Value.Nil.VALUE : thisArg, false);
         var i = 0;
-        for (var arg : args) {
-          if (i >= params.length) {
-            if (varargs == null) throw new MismatchedArgumentsException("too many");
-            else varargs.define(Number.of(i++ - params.length), arg, true);
-            continue;
-          }
-          scope.define(params[i++], arg, true);
-        }
-        if (varargs != null) scope.define(this.varargs, varargs, true);
+        for (; i < params.length && i < args.length; i++) scope.define(slots[i], params[i], args[i], true);
+        if (args.length > params.length && varargs == null) throw new MismatchedArgumentsException("too many");
+        if (varargs != null) scope.define(slots[params.length], varargs, Object.array(Arrays.copyOfRange(args, i, args.length)), true);
         final var diff = params.length - defaults.length;
         while (i < params.length) {
           if (defaults[i - diff] == null) throw new MismatchedArgumentsException("too few");
-          scope.define(params[i], defaults[i++ - diff], true);
+          scope.define(slots[i], params[i], defaults[i++ - diff], true);
         }
         Value value = null;
         try {
@@ -190,16 +213,15 @@ abstract class Value {
         }
       }
       
-      public Value apply(Value thisArg, Iterable<Value> args) {
-        var argv = new ArrayList<Value>();
-        args.forEach(argv::add);
-        var size = argv.size();
+      public Value apply(Value thisArg, Value... args) {
+        var size = args.length;
+        if (size < params.length) args = Arrays.copyOf(args, params.length);
         while (size < params.length) {
           if (params[size] == null) throw new MismatchedArgumentsException("too few");
-          argv.add(params[size++]);
+          args[size] = params[size++];
         }
         if (size > params.length && !varargs) throw new MismatchedArgumentsException("too many");
-        return body.call(thisArg == null ? Value.Nil.VALUE : thisArg, argv.toArray(new Value[size]));
+        return body.call(thisArg == null ? Value.Nil.VALUE : thisArg, args);
       }
       
       @Override
@@ -217,6 +239,20 @@ abstract class Value {
       
     }
     
+    // each call site remembers the function its last callee resolved to, so calling it again goes straight there
+    static final class Cache {
+      
+      private Value callee = null;
+      private Function target = null;
+      private int generation = -1;
+      public long hits = 0, misses = 0;
+      
+      public Function target() {
+        return target;
+      }
+      
+    }
+    
     @FunctionalInterface
     public interface NativeThisFunction {
       
@@ -254,9 +290,11 @@ abstract class Value {
       string = new Symbol("string"),
       number = new Symbol("number"),
       bool = new Symbol("bool"),
-      nil = new Symbol("nil");
+      nil = new Symbol("nil"),
+      iterator = new Symbol("iterator");
+    private static final Set<Symbol> BUILTIN = Set.of(type, invoke, function, symbol, object, string, number, bool, nil, iterator);
     public static final Object meta = Object.of(
-      String.of("getName"), Function.of(null, false, (thisArg, args) -> {
+      String.intern("getName"), Function.of(null, false, (thisArg, args) -> {
         if (thisArg instanceof Symbol) return String.of(((Symbol) thisArg).name);
         throw new TypeException("expected a symbol");
       })
@@ -267,6 +305,10 @@ abstract class Value {
       this.name = name;
     }
     
+    public static boolean isBuiltin(Value value) {
+      return value instanceof Symbol && BUILTIN.contains(value);
+    }
+    
     @Override
     public <R> R match(Function.Matcher<R> function, Symbol.Matcher<R> symbol, Object.Matcher<R> object, String.Matcher<R> string, Number.Matcher<R>  number, Bool.Matcher<R> bool, Nil.Matcher<R> nil) {
       return symbol == null ? null : symbol.match(this);
@@ -308,14 +350,27 @@ abstract class Value {
   public static final class Object extends Value {
     
     public final Object meta;
-    private final Map<Value, MutableValue> entries;
-    
-    private Object(Object meta, Map<Value, MutableValue> entries) {
+    private Shape shape;
+    private Value[] slots = NO_SLOTS;
+    private Map<Value, MutableValue> entries = null;
+    private Resolved resolved = null;
+    private Range range = null;
+    private int length = 0;
+    private int hash = 0;
+    
+    private static final Value[] NO_SLOTS = {};
+    private static int generation = 0;
+    
+    private Object(Object meta, Shape root) {
       this.meta = meta;
-      this.entries = entries;
+      shape = root;
     }
     
     public static Object of(Value... values) {
+      return of(Shape.EMPTY, values);
+    }
+    
+    public static Object of(Shape root, Value... values) {
       Object meta = null;
       var i = 0;
       if (values.length % 2 != 0) {
@@ -323,60 +378,206 @@ abstract class Value {
         if (value == null || value instanceof Object) meta = (Object) value;
         else throw new TypeException("Metaobjects must be objects");
       }
-      var entries = new HashMap<Value, MutableValue>();
-      while (i < values.length) entries.put(values[i++], new MutableValue(values[i++], false));
-      return new Object(meta, entries);
+      var object = new Object(meta, root);
+      while (i < values.length) object.put(values[i++], values[i++], false);
+      return object;
+    }
+    
+    public static Object array(Value... elements) {
+      var object = new Object(null, null);
+      object.slots = elements;
+      object.length = elements.length;
+      return object;
+    }
+    
+    public static Object range(long start, long end) {
+      var object = new Object(null, null);
+      object.slots = null;
+      object.range = new Range(start, start > end ? -1 : 1);
+      object.length = Math.toIntExact(Math.abs(end - start) + 1);
+      return object;
+    }
+    
+    public static Object iterator(Iterator<Value> source) {
+      return of(
+        String.intern("hasNext"), Function.of(null, false, args -> Bool.of(source.hasNext())),
+        String.intern("next"), Function.of(null, false, args -> {
+          if (!source.hasNext()) throw new DataException("iterator is exhausted");
+          return source.next();
+        })
+      );
     }
     
     public static Iterable<Value> iterable(Value value) {
+      var iterator = (value instanceof Object ? (Object) value : value.getMetaobject()).get(Symbol.iterator);
+      if (iterator != null) return () -> protocol(value, iterator);
       if (!(value instanceof Object)) throw new TypeException("only arrays can be iterated upon");
       var object = (Object) value;
       return () -> new Iterator<>() {
         private int i = 0;
         
         public boolean hasNext() {
-          return object.hasSelf(Number.of(i));
+          return object.dense() ? i < object.length : object.hasSelf(Number.of(i));
+        }
+        
+        public Value next() {
+          return object.dense() ? object.element(i++) : object.getSelf(Number.of(i++));
+        }
+      };
+    }
+    
+    private static Iterator<Value> protocol(Value value, Value iterator) {
+      var source = call(iterator, value);
+      Value hasNext = member(source, "hasNext"), next = member(source, "next");
+      return new Iterator<>() {
+        public boolean hasNext() {
+          return Bool.of(call(hasNext, source)).value;
         }
         
         public Value next() {
-          return object.getSelf(Number.of(i++));
+          return call(next, source);
         }
       };
     }
     
+    private static Value member(Value iterator, java.lang.String name) {
+      var value = (iterator instanceof Object ? (Object) iterator : iterator.getMetaobject()).get(String.of(name));
+      if (value == null) throw new TypeException("iterators must have hasNext and next members");
+      return value;
+    }
+    
+    private static Value call(Value functor, Value thisArg) {
+      var function = Function.functor(functor);
+      if (function == null) throw new TypeException("iterators and their members must be functors");
+      return function.apply(thisArg);
+    }
+    
     public boolean has(Value key) {
-      return entries.containsKey(key) || (meta != null && meta.has(key));
+      return hasSelf(key) || (meta != null && meta.has(key));
     }
     
     public boolean hasSelf(Value key) {
-      return entries.containsKey(key);
+      if (shape != null) return shape.slot(key) >= 0;
+      return entries == null ? index(key) >= 0 : entries.containsKey(key);
     }
     
     public Value get(Value key) {
-      var value = entries.get(key);
-      if (value == null) return meta == null ? null : meta.get(key);
-      return value.value;
+      if (shape != null) {
+        var slot = shape.slot(key);
+        if (slot >= 0) return slots[slot];
+      } else if (entries == null) {
+        var index = index(key);
+        if (index >= 0) return element(index);
+      } else {
+        var value = entries.get(key);
+        if (value != null) return value.value;
+      }
+      return meta == null ? null : meta.get(key);
     }
     
     public Value getSelf(Value key) {
+      if (shape != null) {
+        var slot = shape.slot(key);
+        return slot < 0 ? null : slots[slot];
+      }
+      if (entries == null) {
+        var index = index(key);
+        return index < 0 ? null : element(index);
+      }
       var value = entries.get(key);
       return value == null ? null : value.value;
     }
     
     public Value set(Value key, Value value) {
-      var entry = entries.get(key);
-      if (entry != null) {
-        if (entry.mutable) entry.value = value;
-        else throw new DataException("can't set immutable field");
-      } else if (meta != null) {
-        meta.set(key, value);
+      changed(key);
+      if (shape != null) {
+        var slot = shape.slot(key);
+        if (slot >= 0) {
+          if (shape.mutable(slot)) slots[slot] = value;
+          else throw new DataException("can't set immutable field");
+          return value;
+        }
+      } else if (entries == null) {
+        var index = index(key);
+        if (index >= 0) {
+          materialize();
+          return slots[index] = value;
+        }
       } else {
-        return null;
+        var entry = entries.get(key);
+        if (entry != null) {
+          if (entry.mutable) entry.value = value;
+          else throw new DataException("can't set immutable field");
+          return value;
+        }
       }
+      if (meta == null) return null;
+      meta.set(key, value);
       return value;
     }
     
+    public Value get(Value key, Cache cache) {
+      for (var object = this; object != null; object = object.meta) {
+        if (object.shape != null) {
+          var slot = cache.slot(object.shape, key);
+          if (slot >= 0) return object.slots[slot];
+        } else if (object.entries == null) {
+          cache.misses++;
+          var index = object.index(key);
+          if (index >= 0) return object.element(index);
+        } else {
+          cache.misses++;
+          var value = object.entries.get(key);
+          if (value != null) return value.value;
+        }
+      }
+      return null;
+    }
+    
+    public Value set(Value key, Value value, Cache cache) {
+      for (var object = this;; object = object.meta) {
+        object.changed(key);
+        if (object.shape != null) {
+          var slot = cache.slot(object.shape, key);
+          if (slot >= 0) {
+            if (object.shape.mutable(slot)) object.slots[slot] = value;
+            else throw new DataException("can't set immutable field");
+            return value;
+          }
+        } else if (object.entries == null) {
+          cache.misses++;
+          var index = object.index(key);
+          if (index >= 0) {
+            object.materialize();
+            return object.slots[index] = value;
+          }
+        } else {
+          cache.misses++;
+          var entry = object.entries.get(key);
+          if (entry != null) {
+            if (entry.mutable) entry.value = value;
+            else throw new DataException("can't set immutable field");
+            return value;
+          }
+        }
+        if (object.meta == null) return object == this ? null : value;
+      }
+    }
+    
     public Value setSelf(Value key, Value value) {
+      changed(key);
+      if (shape != null) {
+        var slot = shape.slot(key);
+        if (slot < 0) return null;
+        if (shape.mutable(slot)) return slots[slot] = value;
+        throw new DataException("can't set immutable field");
+      }
+      if (entries == null) {
+        var index = index(key);
+        if (index < 0) return null;
+        materialize();
+        return slots[index] = value;
+      }
       var entry = entries.get(key);
       if (entry == null) return null;
       if (entry.mutable) return entry.value = value;
@@ -384,20 +585,133 @@ abstract class Value {
     }
     
     public Value define(Value key, Value value, boolean mutable) {
-      if (entries.containsKey(key)) return null;
-      entries.put(key, new MutableValue(value, mutable));
+      if (hasSelf(key)) return null;
+      put(key, value, mutable);
       return value;
     }
     
+    private void put(Value key, Value value, boolean mutable) {
+      changed(key);
+      if (shape != null) {
+        var slot = shape.slot(key);
+        var next = slot < 0 ? shape.with(key, mutable) : shape;
+        if (next != null) {
+          if (slot < 0) {
+            slot = shape.size();
+            if (slot == slots.length) slots = Arrays.copyOf(slots, Math.max(4, slot * 2));
+            shape = next;
+            hash = 0;
+          }
+          slots[slot] = value;
+          return;
+        }
+        if (shape.size() == 0 && mutable && key instanceof Number) shape = null;
+        else dictionary();
+      }
+      if (entries == null) {
+        materialize();
+        var index = index(key);
+        if (index >= 0 && mutable) {
+          slots[index] = value;
+          return;
+        }
+        if (index < 0 && mutable && key instanceof Number && ((Number) key).value == length) {
+          if (length == slots.length) slots = Arrays.copyOf(slots, Math.max(4, length * 2));
+          slots[length++] = value;
+          return;
+        }
+        dictionary();
+      }
+      entries.put(key, new MutableValue(value, mutable));
+    }
+    
+    // arrays (keys exactly 0 to length - 1, all mutable) keep their elements in slots, or only their ends while a range
+    private boolean dense() {
+      return shape == null && entries == null;
+    }
+    
+    private Value element(int index) {
+      return range == null ? slots[index] : Number.of(range.start + index * range.step);
+    }
+    
+    private void materialize() {
+      if (range == null) return;
+      var elements = new Value[Math.max(4, length)];
+      for (var i = 0; i < length; i++) elements[i] = element(i);
+      slots = elements;
+      range = null;
+    }
+    
+    private int index(Value key) {
+      if (!(key instanceof Number)) return -1;
+      var value = ((Number) key).value;
+      return value >= 0 && value < length && value == (int) value ? (int) value : -1;
+    }
+    
+    private void dictionary() {
+      entries = entries();
+      shape = null;
+      slots = null;
+      range = null;
+      length = 0;
+    }
+    
+    private Map<Value, MutableValue> entries() {
+      if (entries != null) return entries;
+      var entries = new HashMap<Value, MutableValue>();
+      if (shape == null) for (var i = 0; i < length; i++) entries.put(Number.of(i), new MutableValue(element(i), true));
+      else for (var i = 0; i < shape.size(); i++) entries.put(shape.key(i), new MutableValue(slots[i], shape.mutable(i)));
+      return entries;
+    }
+    
+    public int size() {
+      if (shape != null) return shape.size();
+      return entries == null ? length : entries.size();
+    }
+    
     public boolean isEmpty() {
-      return entries.isEmpty();
+      return size() == 0;
     }
     
     public Function getInvoke() {
-      var invoke = get(Symbol.invoke);
+      var invoke = getSelf(Symbol.invoke);
+      if (invoke == null) return meta == null ? null : meta.inheritedInvoke();
       if (invoke instanceof Function) return (Function) invoke;
-      if (invoke instanceof Object) return ((Object) invoke).getInvoke();
-      return null;
+      if (!(invoke instanceof Object)) return null;
+      ((Object) invoke).watch();
+      return ((Object) invoke).getInvoke();
+    }
+    
+    private Function inheritedInvoke() {
+      var resolved = watch();
+      if (resolved.invoke == null) {
+        var invoke = getInvoke();
+        resolved.invoke = invoke == null ? Nil.VALUE : invoke;
+      }
+      return resolved.invoke instanceof Function ? (Function) resolved.invoke : null;
+    }
+    
+    private Symbol inheritedType() {
+      var resolved = watch();
+      if (resolved.type == null) resolved.type = getType();
+      return resolved.type;
+    }
+    
+    private Resolved watch() {
+      if (resolved == null) {
+        resolved = new Resolved();
+        for (var object = meta; object != null && object.resolved == null; object = object.meta) object.resolved = new Resolved();
+      }
+      if (resolved.generation != generation) {
+        resolved.generation = generation;
+        resolved.type = null;
+        resolved.invoke = null;
+      }
+      return resolved;
+    }
+    
+    private void changed(Value key) {
+      if (resolved != null && (key == Symbol.type || key == Symbol.invoke)) generation++;
     }
     
     @Override
@@ -407,8 +721,8 @@ abstract class Value {
     
     @Override
     public Symbol getType() {
-      var value = get(Symbol.type);
-      if (value == null) value = Symbol.object;
+      var value = getSelf(Symbol.type);
+      if (value == null) return meta == null ? Symbol.object : meta.inheritedType();
       if (!(value instanceof Symbol)) throw new TypeException("an object's type must be a symbol");
       return (Symbol) value;
     }
@@ -422,7 +736,7 @@ abstract class Value {
     public java.lang.String toString() {
       var builder = new StringBuilder().append('[');
       var first = true;
-      for (var entry : entries.entrySet()) {
+      for (var entry : entries().entrySet()) {
         if (first) first = false;
         else builder.append(", ");
         builder.append(toString(entry.getKey())).append(": ").append(toString(entry.getValue()));
@@ -440,12 +754,188 @@ abstract class Value {
     
     @Override
     public boolean equals(java.lang.Object o) {
-      return o instanceof Object && entries.equals(((Object) o).entries);
+      return this == o;
     }
     
     @Override
     public int hashCode() {
-      return entries.hashCode();
+      return System.identityHashCode(this);
+    }
+    
+    public boolean equivalent(Value other) {
+      return other instanceof Object && equivalent((Object) other, new ArrayList<>());
+    }
+    
+    // pairs already being compared further up count as equal, so cyclic objects don't recurse forever
+    private boolean equivalent(Object other, List<Object[]> assumed) {
+      if (this == other) return true;
+      if (size() != other.size()) return false;
+      if (frozen() && other.frozen() && structuralHash() != other.structuralHash()) return false;
+      if (range != null && other.range != null && range.start == other.range.start && range.step == other.range.step) return true;
+      for (var pair : assumed) if (pair[0] == this && pair[1] == other) return true;
+      assumed.add(new Object[] {this, other});
+      try {
+        if (dense()) {
+          if (!other.dense()) return other.equivalent(this, assumed);
+          for (var i = 0; i < length; i++) if (!equivalent(element(i), other.element(i), assumed)) return false;
+        } else if (shape != null) {
+          for (var i = 0; i < shape.size(); i++) if (!equivalent(slots[i], other.getSelf(shape.key(i)), assumed)) return false;
+        } else {
+          for (var entry : entries.entrySet()) if (!equivalent(entry.getValue().value, other.getSelf(entry.getKey()), assumed)) return false;
+        }
+        return true;
+      } finally {
+        assumed.remove(assumed.size() - 1);
+      }
+    }
+    
+    private static boolean equivalent(Value value, Value other, List<Object[]> assumed) {
+      if (value instanceof Object) return other instanceof Object && ((Object) value).equivalent((Object) other, assumed);
+      return value.equals(other);
+    }
+    
+    private boolean frozen() {
+      return shape != null && shape.size() > 0 && shape.mutable == 0;
+    }
+    
+    // lets unequal objects whose fields are all immutable be told apart without walking them
+    private int structuralHash() {
+      if (hash == 0) for (var i = 0; i < shape.size(); i++) hash += shape.key(i).hashCode() ^ (slots[i] instanceof Object ? 0 : slots[i].hashCode());
+      return hash;
+    }
+    
+    // objects keyed by program names, literals and built-in symbols share shapes that map each key to a
+    // slot; every run grows its own tree from root(), and any other key or a 33rd field makes a hash map
+    static final class Shape {
+      
+      public static final int MAX_SIZE = 32, MAX_TRANSITIONS = 64;
+      public static final Shape EMPTY = root();
+      
+      private final Value[] keys, table;
+      private final byte[] slots;
+      private final long mutable;
+      private final Map<Value, Shape> mutableTransitions = new ConcurrentHashMap<>(), immutableTransitions = new ConcurrentHashMap<>();
+      
+      private Shape(Value[] keys, long mutable) {
+        this.keys = keys;
+        this.mutable = mutable;
+        table = new Value[Integer.highestOneBit(keys.length * 2 + 1) * 2];
+        slots = new byte[table.length];
+        for (var slot = 0; slot < keys.length; slot++) {
+          var i = keys[slot].hashCode() & table.length - 1;
+          while (table[i] != null) i = i + 1 & table.length - 1;
+          table[i] = keys[slot];
+          slots[i] = (byte) slot;
+        }
+      }
+      
+      public static Shape root() {
+        return new Shape(new Value[0], 0);
+      }
+      
+      public int size() {
+        return keys.length;
+      }
+      
+      public Value key(int slot) {
+        return keys[slot];
+      }
+      
+      public int slot(Value key) {
+        var mask = table.length - 1;
+        for (var i = key.hashCode() & mask;; i = i + 1 & mask) {
+          var found = table[i];
+          if (found == null) return -1;
+          if (found == key || found.equals(key)) return slots[i];
+        }
+      }
+      
+      public boolean mutable(int slot) {
+        return (mutable >>> slot & 1) != 0;
+      }
+      
+      public Shape with(Value key, boolean mutable) {
+        if (keys.length == MAX_SIZE || !(key instanceof String && ((String) key).interned || Symbol.isBuiltin(key))) return null;
+        var transitions = mutable ? mutableTransitions : immutableTransitions;
+        var next = transitions.get(key);
+        if (next == null && transitions.size() < MAX_TRANSITIONS) {
+          var keys = Arrays.copyOf(this.keys, this.keys.length + 1);
+          keys[this.keys.length] = key;
+          next = new Shape(keys, mutable ? this.mutable | 1L << this.keys.length : this.mutable);
+          var raced = transitions.putIfAbsent(key, next);
+          if (raced != null) next = raced;
+        }
+        return next;
+      }
+      
+    }
+    
+    // each `object'member` site remembers the slot it found for the last ENTRIES shapes along the metaobject chain
+    static final class Cache {
+      
+      public static final int ENTRIES = 4;
+      
+      private Entry[] entries = {};
+      private boolean megamorphic = false;
+      public long hits = 0, misses = 0;
+      
+      public boolean megamorphic() {
+        return megamorphic;
+      }
+      
+      private int slot(Shape shape, Value key) {
+        var entries = this.entries;
+        for (var entry : entries) if (entry != null && entry.shape == shape && (entry.key == key || entry.key.equals(key))) {
+          hits++;
+          return entry.slot;
+        }
+        misses++;
+        var slot = shape.slot(key);
+        if (entries.length < ENTRIES) {
+          entries = Arrays.copyOf(entries, entries.length + 1);
+          entries[entries.length - 1] = new Entry(shape, key, slot);
+          this.entries = entries;
+        } else {
+          megamorphic = true;
+        }
+        return slot;
+      }
+      
+      private static final class Entry {
+        
+        public final Shape shape;
+        public final Value key;
+        public final int slot;
+        
+        public Entry(Shape shape, Value key, int slot) {
+          this.shape = shape;
+          this.key = key;
+          this.slot = slot;
+        }
+        
+      }
+      
+    }
+    
+    // `a..b` until something writes to it, so indexing, `|r|`, `==` and `for` never build the elements
+    private static final class Range {
+      
+      public final long start, step;
+      
+      public Range(long start, long step) {
+        this.start = start;
+        this.step = step;
+      }
+      
+    }
+    
+    // the `Symbol'type` and `Symbol'invoke` a metaobject resolves to, until either key changes on an object a lookup went through
+    private static final class Resolved {
+      
+      public int generation = -1;
+      public Symbol type = null;
+      public Value invoke = null;
+      
     }
     
     private final static class MutableValue {
@@ -458,16 +948,6 @@ abstract class Value {
         this.mutable = mutable;
       }
       
-      @Override
-      public boolean equals(java.lang.Object o) {
-        return o instanceof MutableValue && value.equals(((MutableValue) o).value);
-      }
-      
-      @Override
-      public int hashCode() {
-        return value.hashCode();
-      }
-      
     }
     
     public interface Matcher<R> {
@@ -480,23 +960,87 @@ abstract class Value {
   
   public static final class String extends Value {
     
+    // names and literals share one instance each, so lookups can compare keys by identity first;
+    // weakly held so that strings nothing uses anymore are still collected
+    private static final Map<java.lang.String, WeakReference<String>> INTERNED = new WeakHashMap<>();
     public static final Object META = Object.of(
-      String.of("indexOf"), Function.of(new Value[1], false, (thisArg, args) -> {
-        if (thisArg instanceof String && args[0] instanceof String) return Number.of(((String) thisArg).value.indexOf(args[0].toString()));
+      String.intern("indexOf"), Function.of(new Value[1], false, (thisArg, args) -> {
+        if (thisArg instanceof String && args[0] instanceof String) return Number.of(((String) thisArg).toString().indexOf(args[0].toString()));
+        throw new TypeException("expected a string");
+      }),
+      Symbol.iterator, Function.of(null, false, (thisArg, args) -> {
+        if (thisArg instanceof String) return Object.iterator(((String) thisArg).toString().codePoints().mapToObj(c -> (Value) String.of(Character.toString(c))).iterator());
         throw new TypeException("expected a string");
       })
     );
-    public static final String EMPTY = new String("");
-    public final java.lang.String value;
+    public static final String EMPTY = new String("", true);
+    // longer joins only link their parts and copy them together the first time the text is needed, so `+=` stays linear
+    public static final int MIN_ROPE_LENGTH = 64;
+    private java.lang.String value;
+    private String left, right;
+    private final int length;
+    private final boolean interned;
+    private int hash = 0;
+    
+    private String(java.lang.String value, boolean interned) {
+      this.value = value;
+      this.interned = interned;
+      length = value.length();
+    }
     
     private String(java.lang.String value) {
-      this.value = value;
+      this(value, false);
+    }
+    
+    private String(String left, String right) {
+      this.left = left;
+      this.right = right;
+      interned = false;
+      length = Math.addExact(left.length, right.length);
     }
     
     public static String of(java.lang.String value) {
       return value.length() == 0 ? EMPTY : new String(value);
     }
     
+    public static String intern(java.lang.String value) {
+      if (value.length() == 0) return EMPTY;
+      synchronized (INTERNED) {
+        var interned = INTERNED.get(value);
+        var string = interned == null ? null : interned.get();
+        if (string == null) INTERNED.put(value, new WeakReference<>(string = new String(value, true)));
+        return string;
+      }
+    }
+    
+    public static String concat(String left, String right) {
+      if (left.length == 0) return right;
+      if (right.length == 0) return left;
+      if (left.length + right.length < MIN_ROPE_LENGTH) return new String(left.toString() + right);
+      return new String(left, right);
+    }
+    
+    public int length() {
+      return length;
+    }
+    
+    private void flatten() {
+      var builder = new StringBuilder(length);
+      var pending = new ArrayDeque<String>();
+      pending.push(this);
+      while (!pending.isEmpty()) {
+        var string = pending.pop();
+        if (string.value != null) {
+          builder.append(string.value);
+        } else {
+          pending.push(string.right);
+          pending.push(string.left);
+        }
+      }
+      value = builder.toString();
+      left = right = null;
+    }
+    
     @Override
     public <R> R match(Function.Matcher<R> function, Symbol.Matcher<R> symbol, Object.Matcher<R> object, String.Matcher<R> string, Number.Matcher<R> number, Bool.Matcher<R> bool, Nil.Matcher<R> nil) {
       return string == null ? null : string.match(this);
@@ -514,17 +1058,22 @@ abstract class Value {
     
     @Override
     public java.lang.String toString() {
+      if (value == null) flatten();
       return value;
     }
     
     @Override
     public boolean equals(java.lang.Object o) {
-      return o instanceof String && value.equals(((String) o).value);
+      if (this == o) return true;
+      if (!(o instanceof String)) return false;
+      var string = (String) o;
+      return length == string.length && (hash == 0 || string.hash == 0 || hash == string.hash) && toString().equals(string.toString());
     }
     
     @Override
     public int hashCode() {
-      return value.hashCode();
+      if (hash == 0) hash = toString().hashCode();
+      return hash;
     }
     
     public interface Matcher<R> {
@@ -540,23 +1089,40 @@ abstract class Value {
     public static final Object META = Object.of(
       Symbol.invoke, Function.of(new Value[1], false, (thisArg, args) -> BinOpFunc.MUL.operate(thisArg, args[0]))
     );
-    public static final Number ZERO = new Number(0), ONE = new Number(1), NaN = new Number(Double.NaN), INFINITY = new Number(Double.POSITIVE_INFINITY), NEGATIVE_INFINITY = new Number(Double.NEGATIVE_INFINITY);
+    public static final int MIN_CACHED = -128, MAX_CACHED = Math.max(1, Integer.getInteger("thing.numbers.cache", 1024));
+    private static final Number[] CACHED = cache();
+    public static final Number ZERO = CACHED[-MIN_CACHED], ONE = CACHED[1 - MIN_CACHED], NaN = new Number(Double.NaN), INFINITY = new Number(Double.POSITIVE_INFINITY), NEGATIVE_INFINITY = new Number(Double.NEGATIVE_INFINITY);
     public final double value;
     
     private Number(double value) {
       this.value = value;
     }
     
+    private static Number[] cache() {
+      var cached = new Number[MAX_CACHED - MIN_CACHED + 1];
+      for (var i = 0; i < cached.length; i++) cached[i] = new Number(i + MIN_CACHED);
+      return cached;
+    }
+    
+    public static Number of(long value) {
+      return value >= MIN_CACHED && value <= MAX_CACHED ? CACHED[(int) value - MIN_CACHED] : new Number(value);
+    }
+    
     public static Number of(double value) {
-      if (value == 0) return ZERO;
-      if (value == 1) return ONE;
-      if (value == Double.NaN) return NaN;
+      var integer = (int) value;
+      if (integer == value && integer >= MIN_CACHED && integer <= MAX_CACHED && (integer != 0 || Double.doubleToRawLongBits(value) == 0)) return CACHED[integer - MIN_CACHED];
+      if (value != value) return NaN;
       if (value == Double.POSITIVE_INFINITY) return INFINITY;
       if (value == Double.NEGATIVE_INFINITY) return NEGATIVE_INFINITY;
       return new Number(value);
     }
     
+    public static boolean isNumeric(Value value) {
+      return value instanceof Number || value instanceof Bool || value instanceof Nil;
+    }
+    
     public static Number of(Value value) {
+      if (value instanceof Number) return (Number) value;
       return value.match(
         function -> new TypeException("can't convert a function to a number").throwValue(),
         symbol -> new TypeException("can't convert a symbol to a number").throwValue(),
@@ -569,7 +1135,7 @@ abstract class Value {
     }
     
     public Number negative() {
-      return new Number(-value);
+      return Number.of(-value);
     }
     
     @Override
@@ -597,9 +1163,11 @@ abstract class Value {
       return o instanceof Number && value == ((Number) o).value;
     }
     
+    // whole numbers hash like their integer value, so objects keyed by them spread well
     @Override
     public int hashCode() {
-      return Double.hashCode(value);
+      var integer = (long) value;
+      return integer == value ? Long.hashCode(integer) : Double.hashCode(value);
     }
     
     public interface Matcher<R> {
@@ -630,8 +1198,8 @@ abstract class Value {
       return value.match(
         function -> TRUE,
         symbol -> TRUE,
-        object -> of(!object.entries.isEmpty()),
-        string -> of(string.value.length() != 0),
+        object -> of(!object.isEmpty()),
+        string -> of(string.length() != 0),
         number -> of(number.value != 0),
         bool -> bool,
         nil -> FALSE
@@ -755,191 +1323,145 @@ abstract class Value {
     
     public static final BinOpFunc
       SEQUENCE = (left, right) -> right,
-      ADD = (left, right) -> left.match(
-        function -> right instanceof String ? new String(function + ((String) right).value) : right instanceof Nil ? right : badOpType("add"),
-        symbol -> right instanceof String ? new String(symbol + ((String) right).value) : right instanceof Nil ? right : badOpType("add"),
-        object -> right instanceof String ? new String(object + ((String) right).value) : right instanceof Nil ? right : badOpType("add"),
-        string -> right instanceof Nil ? right : new String(string.value + right),
-        number -> right.match(
-          function -> badOpType("add"),
-          symbol -> badOpType("add"),
-          object -> badOpType("add"),
-          string -> new String(number + string.value),
-          number2 -> new Number(number.value + number2.value),
-          bool -> bool.value ? new Number(number.value + 1) : number,
-          nil -> nil
-        ),
-        bool -> right.match(
-          function -> badOpType("add"),
-          symbol -> badOpType("add"),
-          object -> badOpType("add"),
-          string -> new String(bool + string.value),
-          number -> bool.value ? new Number(number.value + 1) : number,
-          bool2 -> new Bool(bool.value | bool2.value),
-          nil -> nil
-        ),
-        nil -> right instanceof String ? new String(nil + ((String) right).value) : nil
-      ),
-      SUB = (left, right) -> left.match(
-        function -> right instanceof Nil ? right : badOpType("sub"),
-        symbol -> right instanceof Nil ? right : badOpType("sub"),
-        object -> right instanceof Nil ? right : badOpType("sub"),
-        string -> right instanceof Nil ? right : badOpType("sub"),
-        number -> right.match(
-          function -> badOpType("sub"),
-          symbol -> badOpType("sub"),
-          object -> badOpType("sub"),
-          string -> badOpType("sub"),
-          number2 -> new Number(number.value - number2.value),
-          bool -> bool.value ? new Number(number.value - 1) : number,
-          nil -> nil
-        ),
-        bool -> right.match(
-          function -> badOpType("sub"),
-          symbol -> badOpType("sub"),
-          object -> badOpType("sub"),
-          string -> badOpType("sub"),
-          number -> new Number((bool.value ? 1 : 0) - number.value),
-          bool2 -> new Bool(bool.value ^ bool2.value),
-          nil -> nil
-        ),
-        nil -> nil
-      ),
-      MUL = (left, right) -> left.match(
-        function -> right instanceof Bool ? ((Bool) right).value ? function : Nil.VALUE : right instanceof Nil ? Nil.VALUE : badOpType("mul"),
-        symbol -> right instanceof Bool ? ((Bool) right).value ? symbol : Nil.VALUE : right instanceof Nil ? Nil.VALUE : badOpType("mul"),
-        object -> right instanceof Bool ? ((Bool) right).value ? object : Nil.VALUE : right instanceof Nil ? Nil.VALUE : badOpType("mul"),
-        string -> right.match(
-          function -> badOpType("mul"),
-          symbol -> badOpType("mul"),
-          object -> badOpType("mul"),
-          string2 -> badOpType("mul"),
-          number -> repeatString(string, number),
-          bool -> bool.value ? string : Nil.VALUE,
-          nil -> nil
-        ),
-        number -> right.match(
-          function -> badOpType("mul"),
-          symbol -> badOpType("mul"),
-          object -> badOpType("mul"),
-          string -> repeatString(string, number),
-          number2 -> new Number(number.value * number2.value),
-          bool -> bool.value ? number : Nil.VALUE,
-          nil -> nil
-        ),
-        bool -> right instanceof Bool ? Bool.of(bool.value & ((Bool) right).value) : bool.value ? right : Nil.VALUE,
-        nil -> nil
-      ),
-      DIV = (left, right) -> left.match(
-        function -> right == Bool.TRUE ? function : right instanceof Nil || right == Bool.FALSE ? Nil.VALUE : badOpType("div"),
-        symbol -> right == Bool.TRUE ? symbol : right instanceof Nil || right == Bool.FALSE ? Nil.VALUE : badOpType("div"),
-        object -> right == Bool.TRUE ? object : right instanceof Nil || right == Bool.FALSE ? Nil.VALUE : badOpType("div"),
-        string -> right == Bool.TRUE ? string : right instanceof Nil || right == Bool.FALSE ? Nil.VALUE : badOpType("div"),
-        number -> right.match(
-          function -> badOpType("div"),
-          symbol -> badOpType("div"),
-          object -> badOpType("div"),
-          string -> badOpType("div"),
-          number2 -> number2.value == 0 ? number.value < 0 ? Number.NEGATIVE_INFINITY : Number.INFINITY : new Number(number.value / number2.value),
-          bool -> bool.value ? number : Nil.VALUE,
-          nil -> nil
-        ),
-        bool -> right instanceof Bool ? Bool.of(bool.value == ((Bool) right).value) : bool.value ? right : Nil.VALUE,
-        nil -> nil
-      ),
-      MOD = (left, right) -> left.match(
-        function -> right == Bool.FALSE ? function : right instanceof Nil || right == Bool.TRUE ? Nil.VALUE : badOpType("mod"),
-        symbol -> right == Bool.FALSE ? symbol : right instanceof Nil || right == Bool.TRUE ? Nil.VALUE : badOpType("mod"),
-        object -> right == Bool.FALSE ? object : right instanceof Nil || right == Bool.TRUE ? Nil.VALUE : badOpType("mod"),
-        string -> right == Bool.FALSE ? string : right instanceof Nil || right == Bool.TRUE ? Nil.VALUE : badOpType("mod"),
-        number -> right.match(
-          function -> badOpType("mod"),
-          symbol -> badOpType("mod"),
-          object -> badOpType("mod"),
-          string -> badOpType("mod"),
-          number2 -> number2.value == 0 ? number : new Number(number.value % number2.value),
-          bool -> bool.value ? Nil.VALUE : number,
-          nil -> nil
-        ),
-        bool -> right instanceof Bool ? bool.value ? ((Bool) right).not() : Bool.FALSE : bool.value ? Nil.VALUE : right,
-        nil -> nil
-      ),
-      EQ = (left, right) -> Bool.of(left.match(
-        function -> function.equals(right),
-        symbol -> symbol.equals(right),
-        object -> object.equals(right),
-        string -> string.equals(right),
-        number -> number.equals(Number.of(right)),
-        bool -> bool.equals(Bool.of(right)),
-        nil -> nil.equals(right) && Bool.of(right).equals(nil)
-      ) || right.match(
-        function -> false,
-        symbol -> false,
-        object -> false,
-        string -> false,
-        number -> number.equals(Number.of(left)),
-        bool -> bool.equals(Bool.of(left)),
-        nil -> Bool.of(left).equals(nil)
-      )),
+      ADD = new Dispatch("add")
+        .on(ANY, STRING, (left, right) -> String.concat(String.of(left.toString()), (String) right))
+        .on(STRING, ANY, (left, right) -> String.concat((String) left, right instanceof String ? (String) right : String.of(right.toString())))
+        .on(ANY, NIL, (left, right) -> right)
+        .on(NIL, ANY, (left, right) -> left)
+        .on(NIL, STRING, (left, right) -> String.concat(String.of(left.toString()), (String) right))
+        .on(NUMBER, NUMBER, (left, right) -> Number.of(((Number) left).value + ((Number) right).value))
+        .on(NUMBER, BOOL, (left, right) -> ((Bool) right).value ? Number.of(((Number) left).value + 1) : left)
+        .on(BOOL, NUMBER, (left, right) -> ((Bool) left).value ? Number.of(((Number) right).value + 1) : right)
+        .on(BOOL, BOOL, (left, right) -> Bool.of(((Bool) left).value | ((Bool) right).value)),
+      SUB = new Dispatch("sub")
+        .on(ANY, NIL, (left, right) -> right)
+        .on(NIL, ANY, (left, right) -> left)
+        .on(NUMBER, NUMBER, (left, right) -> Number.of(((Number) left).value - ((Number) right).value))
+        .on(NUMBER, BOOL, (left, right) -> ((Bool) right).value ? Number.of(((Number) left).value - 1) : left)
+        .on(BOOL, NUMBER, (left, right) -> Number.of((((Bool) left).value ? 1 : 0) - ((Number) right).value))
+        .on(BOOL, BOOL, (left, right) -> Bool.of(((Bool) left).value ^ ((Bool) right).value)),
+      MUL = new Dispatch("mul")
+        .on(ANY, BOOL, (left, right) -> ((Bool) right).value ? left : Nil.VALUE)
+        .on(ANY, NIL, (left, right) -> Nil.VALUE)
+        .on(BOOL, ANY, (left, right) -> ((Bool) left).value ? right : Nil.VALUE)
+        .on(BOOL, BOOL, (left, right) -> Bool.of(((Bool) left).value & ((Bool) right).value))
+        .on(NIL, ANY, (left, right) -> left)
+        .on(STRING, NUMBER, (left, right) -> repeatString((String) left, (Number) right))
+        .on(NUMBER, STRING, (left, right) -> repeatString((String) right, (Number) left))
+        .on(NUMBER, NUMBER, (left, right) -> Number.of(((Number) left).value * ((Number) right).value)),
+      DIV = new Dispatch("div")
+        .on(ANY, BOOL, (left, right) -> ((Bool) right).value ? left : Nil.VALUE)
+        .on(ANY, NIL, (left, right) -> Nil.VALUE)
+        .on(BOOL, ANY, (left, right) -> ((Bool) left).value ? right : Nil.VALUE)
+        .on(BOOL, BOOL, (left, right) -> Bool.of(((Bool) left).value == ((Bool) right).value))
+        .on(NIL, ANY, (left, right) -> left)
+        .on(NUMBER, NUMBER, (left, right) -> divide((Number) left, (Number) right)),
+      MOD = new Dispatch("mod")
+        .on(ANY, BOOL, (left, right) -> ((Bool) right).value ? Nil.VALUE : left)
+        .on(ANY, NIL, (left, right) -> Nil.VALUE)
+        .on(BOOL, ANY, (left, right) -> ((Bool) left).value ? Nil.VALUE : right)
+        .on(BOOL, BOOL, (left, right) -> ((Bool) left).value ? ((Bool) right).not() : Bool.FALSE)
+        .on(NIL, ANY, (left, right) -> left)
+        .on(NUMBER, NUMBER, (left, right) -> ((Number) right).value == 0 ? left : Number.of(((Number) left).value % ((Number) right).value)),
+      EQ = new Dispatch("eq")
+        .on(ANY, ANY, (left, right) -> Bool.of(equal(left, right)))
+        .on(STRING, STRING, (left, right) -> Bool.of(left.equals(right)))
+        .on(NUMBER, NUMBER, (left, right) -> Bool.of(((Number) left).value == ((Number) right).value)),
       NEQ = (left, right) -> ((Bool) EQ.operate(left, right)).not(),
       SAME = (left, right) -> Bool.of(left instanceof Object ? left == right : left.equals(right)),
       NSAME = (left, right) -> ((Bool) SAME.operate(left, right)).not(),
-      LT = (left, right) -> left.match(
-        function -> badOpType("lt"),
-        symbol -> badOpType("lt"),
-        object -> badOpType("lt"),
-        string -> right instanceof String ? Bool.of(string.value.compareTo(((String) right).value) < 0) : badOpType("lt"),
-        number -> badOpType("lt", () -> Bool.of(number.value < Number.of(right).value)),
-        bool -> badOpType("lt", () -> Bool.of(Number.of(bool).value < Number.of(right).value)),
-        nil -> badOpType("lt", () -> Bool.of(Number.of(nil).value < Number.of(right).value))
-      ),
-      GT = (left, right) -> left.match(
-        function -> badOpType("gt"),
-        symbol -> badOpType("gt"),
-        object -> badOpType("gt"),
-        string -> right instanceof String ? Bool.of(string.value.compareTo(((String) right).value) > 0) : badOpType("gt"),
-        number -> badOpType("gt", () -> Bool.of(number.value > Number.of(right).value)),
-        bool -> badOpType("gt", () -> Bool.of(Number.of(bool).value > Number.of(right).value)),
-        nil -> badOpType("gt", () -> Bool.of(Number.of(nil).value > Number.of(right).value))
-      ),
-      LTE = (left, right) -> badOpType("lte", () -> ((Bool) GT.operate(left, right)).not()),
-      GTE = (left, right) -> badOpType("gte", () -> ((Bool) LT.operate(left, right)).not()),
+      LT = new Dispatch("lt")
+        .on(NUMBER | BOOL | NIL, NUMBER | BOOL | NIL, (left, right) -> Bool.of(Number.of(left).value < Number.of(right).value))
+        .on(STRING, STRING, (left, right) -> Bool.of(left.toString().compareTo(right.toString()) < 0))
+        .on(NUMBER, NUMBER, (left, right) -> Bool.of(((Number) left).value < ((Number) right).value)),
+      GT = new Dispatch("gt")
+        .on(NUMBER | BOOL | NIL, NUMBER | BOOL | NIL, (left, right) -> Bool.of(Number.of(left).value > Number.of(right).value))
+        .on(STRING, STRING, (left, right) -> Bool.of(left.toString().compareTo(right.toString()) > 0))
+        .on(NUMBER, NUMBER, (left, right) -> Bool.of(((Number) left).value > ((Number) right).value)),
+      LTE = new Dispatch("lte")
+        .on(NUMBER | BOOL | NIL, NUMBER | BOOL | NIL, (left, right) -> Bool.of(!(Number.of(left).value > Number.of(right).value)))
+        .on(STRING, STRING, (left, right) -> Bool.of(left.toString().compareTo(right.toString()) <= 0))
+        .on(NUMBER, NUMBER, (left, right) -> Bool.of(!(((Number) left).value > ((Number) right).value))),
+      GTE = new Dispatch("gte")
+        .on(NUMBER | BOOL | NIL, NUMBER | BOOL | NIL, (left, right) -> Bool.of(!(Number.of(left).value < Number.of(right).value)))
+        .on(STRING, STRING, (left, right) -> Bool.of(left.toString().compareTo(right.toString()) >= 0))
+        .on(NUMBER, NUMBER, (left, right) -> Bool.of(!(((Number) left).value < ((Number) right).value))),
       AND = (left, right) -> Bool.of(left).value ? right : left,
       OR = (left, right) -> Bool.of(left).value ? left : right,
       RANGE = (left, right) -> {
-        Number start = badOpType("range", () -> Number.of(left)), end = badOpType("range", () -> Number.of(right));
+        if (!Number.isNumeric(left) || !Number.isNumeric(right)) return badOpType("range");
+        Number start = Number.of(left), end = Number.of(right);
         long starti = Math.round(start.value), endi = Math.round(end.value);
         if (starti != start.value || endi != end.value) throw new Value.Exception("Range operands must be integers");
-        var arr = Object.of();
-        long i = 0;
-        if (starti == endi) arr.define(Number.ZERO, start, true);
-        else if (starti > endi) for (; starti >= endi; starti--) arr.define(Number.of(i++), Number.of(starti), true);
-        else for (; starti <= endi; starti++) arr.define(Number.of(i++), Number.of(starti), true);
-        return arr;
+        return Object.range(starti, endi);
       };
     
+    private static Value divide(Number left, Number right) {
+      if (right.value == 0) return left.value < 0 ? Number.NEGATIVE_INFINITY : Number.INFINITY;
+      return Number.of(left.value / right.value);
+    }
+    
+    private static boolean equal(Value left, Value right) {
+      if (left instanceof Object) {
+        if (((Object) left).equivalent(right)) return true;
+      } else if (left instanceof Number) {
+        if (left.equals(Number.of(right))) return true;
+      } else if (left instanceof Bool) {
+        if (left.equals(Bool.of(right))) return true;
+      } else if (left instanceof Nil) {
+        if (left.equals(right) && Bool.of(right).equals(left)) return true;
+      } else if (left.equals(right)) {
+        return true;
+      }
+      if (right instanceof Number) return right.equals(Number.of(left));
+      if (right instanceof Bool) return right.equals(Bool.of(left));
+      return right instanceof Nil && Bool.of(left).equals(right);
+    }
+    
     private static Value repeatString(String string, Number number) {
       var i = Math.floor(number.value); 
       if (i <= 0) return Nil.VALUE;
-      var builder = new StringBuilder();
-      while (i --> 0) builder.append(string.value);
-      return new String(builder.toString());
+      return String.of(string.toString().repeat((int) i));
     }
     
     private static <V extends Value> V badOpType(java.lang.String name) {
       return new TypeException("Invalid operand type for unary operator '" + name + '\'').throwValue();
     }
     
-    private static <V extends Value> V badOpType(java.lang.String name, Supplier<V> supplier) {
-      try {
-        return supplier.get();
-      } catch (TypeException e) {
-        return badOpType(name);
+    Value operate(Value left, Value right);
+    
+    // picks the implementation by the kinds of both operands in one table lookup, without building closures per call
+    final class Dispatch implements BinOpFunc {
+      
+      public static final int FUNCTION = 1, SYMBOL = 2, OBJECT = 4, STRING = 8, NUMBER = 16, BOOL = 32, NIL = 64, ANY = 127;
+      private static final int KINDS = 7;
+      private final BinOpFunc[] cells = new BinOpFunc[KINDS * KINDS];
+      
+      private Dispatch(java.lang.String name) {
+        Arrays.fill(cells, (BinOpFunc) (left, right) -> badOpType(name));
       }
+      
+      private Dispatch on(int left, int right, BinOpFunc cell) {
+        for (var i = 0; i < KINDS; i++) for (var j = 0; j < KINDS; j++) if ((left >>> i & 1) != 0 && (right >>> j & 1) != 0) cells[i * KINDS + j] = cell;
+        return this;
+      }
+      
+      @Override
+      public Value operate(Value left, Value right) {
+        return cells[kind(left) * KINDS + kind(right)].operate(left, right);
+      }
+      
+      private static int kind(Value value) {
+        if (value instanceof Number) return 4;
+        if (value instanceof String) return 3;
+        if (value instanceof Bool) return 5;
+        if (value instanceof Nil) return 6;
+        if (value instanceof Object) return 2;
+        return value instanceof Function ? 0 : 1;
+      }
+      
     }
     
-    Value operate(Value left, Value right);
-    
   }
   
   @FunctionalInterface
@@ -949,31 +1471,23 @@ abstract class Value {
       ABS = value -> value.match(
         function -> badOpType("abs"),
         symbol -> badOpType("abs"),
-        object -> new Number(object.entries.size()),
-        string -> new Number(string.value.length()),
-        number -> new Number(Math.abs(number.value)),
+        object -> Number.of(object.size()),
+        string -> Number.of(string.length()),
+        number -> Number.of(Math.abs(number.value)),
         bool -> Number.of(bool),
         nil -> Number.of(nil)
       ),
-      POS = value -> badOpType("pos", () -> Number.of(value)),
-      NEG = value -> badOpType("neg", () -> Number.of(value).negative()),
-      NOT = value -> badOpType("not", () -> Bool.of(value).not()),
-      INC = value -> badOpType("inc", () -> new Number(Number.of(value).value + 1)),
-      DEC = value -> badOpType("dec", () -> new Number(Number.of(value).value - 1)),
+      POS = value -> Number.isNumeric(value) ? Number.of(value) : badOpType("pos"),
+      NEG = value -> Number.isNumeric(value) ? Number.of(value).negative() : badOpType("neg"),
+      NOT = value -> Bool.of(value).not(),
+      INC = value -> Number.isNumeric(value) ? Number.of(Number.of(value).value + 1) : badOpType("inc"),
+      DEC = value -> Number.isNumeric(value) ? Number.of(Number.of(value).value - 1) : badOpType("dec"),
       SPREAD = value -> new SpreadException(value).throwValue();
     
     private static <V extends Value> V badOpType(java.lang.String name) {
       return new TypeException("Invalid operand type for unary operator '" + name + '\'').throwValue();
     }
     
-    private static <V extends Value> V badOpType(java.lang.String name, Supplier<V> supplier) {
-      try {
-        return supplier.get();
-      } catch (TypeException e) {
-        return badOpType(name);
-      }
-    }
-    
     Value operate(Value value);
     
   }